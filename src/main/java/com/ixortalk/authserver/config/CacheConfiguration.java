@@ -23,26 +23,68 @@
  */
 package com.ixortalk.authserver.config;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.config.cache.MeteredCaffeineCacheManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.*;
-import org.springframework.cache.support.NoOpCacheManager;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+
+import static com.codahale.metrics.MetricRegistry.name;
 
 @SuppressWarnings("unused")
 @Configuration
 @EnableCaching
 @AutoConfigureAfter(value = { MetricsConfiguration.class, DatabaseConfiguration.class })
+@PropertySource("classpath:config/hibernate-cache.properties")
 public class CacheConfiguration {
 
     private final Logger log = LoggerFactory.getLogger(CacheConfiguration.class);
 
     private CacheManager cacheManager;
 
+    @Inject
+    private JHipsterProperties jHipsterProperties;
+
+    @Autowired(required = false)
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void registerHibernateCacheMetrics() {
+        if (metricRegistry == null) {
+            return;
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            log.debug("Hibernate statistics are disabled, not publishing second-level cache metrics");
+            return;
+        }
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            log.debug("Registering metrics for second-level cache region {}", regionName);
+            // looked up on every read, clearing the statistics replaces the per region instances
+            metricRegistry.register(name("hibernate.cache", regionName, "hits"), (Gauge<Long>) () -> statistics.getSecondLevelCacheStatistics(regionName).getHitCount());
+            metricRegistry.register(name("hibernate.cache", regionName, "misses"), (Gauge<Long>) () -> statistics.getSecondLevelCacheStatistics(regionName).getMissCount());
+            metricRegistry.register(name("hibernate.cache", regionName, "puts"), (Gauge<Long>) () -> statistics.getSecondLevelCacheStatistics(regionName).getPutCount());
+            metricRegistry.register(name("hibernate.cache", regionName, "size"), (Gauge<Long>) () -> statistics.getSecondLevelCacheStatistics(regionName).getElementCountInMemory());
+        }
+        metricRegistry.register(name("hibernate.query-cache", "hits"), (Gauge<Long>) statistics::getQueryCacheHitCount);
+        metricRegistry.register(name("hibernate.query-cache", "misses"), (Gauge<Long>) statistics::getQueryCacheMissCount);
+    }
+
     @PreDestroy
     public void destroy() {
         log.info("Closing Cache Manager");
@@ -50,8 +92,8 @@ public class CacheConfiguration {
 
     @Bean
     public CacheManager cacheManager() {
-        log.debug("No cache");
-        cacheManager = new NoOpCacheManager();
+        log.debug("Starting Caffeine cache manager");
+        cacheManager = new MeteredCaffeineCacheManager(jHipsterProperties.getCache(), metricRegistry);
         return cacheManager;
     }
 }
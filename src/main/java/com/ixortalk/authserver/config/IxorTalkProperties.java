@@ -42,6 +42,20 @@ public class IxorTalkProperties {
 
     private Map<String, Microservice> server = newHashMap();
 
+    private Security security = new Security();
+
+    private Feign feign = new Feign();
+
+    private Mail mail = new Mail();
+
+    private UserImport userImport = new UserImport();
+
+    private UserExport userExport = new UserExport();
+
+    private Audit audit = new Audit();
+
+    private ProfilePicture profilePicture = new ProfilePicture();
+
     public List<String> getRoles() {
         return roles;
     }
@@ -74,30 +88,1192 @@ public class IxorTalkProperties {
         return getServer().get(name);
     }
 
-    public static class OAuth {
+    public Security getSecurity() {
+        return security;
+    }
 
-        private Clients clients = new Clients();
+    public void setSecurity(Security security) {
+        this.security = security;
+    }
 
-        public Clients getClients() {
-            return clients;
+    public Feign getFeign() {
+        return feign;
+    }
+
+    public void setFeign(Feign feign) {
+        this.feign = feign;
+    }
+
+    public Mail getMail() {
+        return mail;
+    }
+
+    public void setMail(Mail mail) {
+        this.mail = mail;
+    }
+
+    public UserImport getUserImport() {
+        return userImport;
+    }
+
+    public void setUserImport(UserImport userImport) {
+        this.userImport = userImport;
+    }
+
+    public UserExport getUserExport() {
+        return userExport;
+    }
+
+    public void setUserExport(UserExport userExport) {
+        this.userExport = userExport;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public void setAudit(Audit audit) {
+        this.audit = audit;
+    }
+
+    public ProfilePicture getProfilePicture() {
+        return profilePicture;
+    }
+
+    public void setProfilePicture(ProfilePicture profilePicture) {
+        this.profilePicture = profilePicture;
+    }
+
+    public static class UserImport {
+
+        /**
+         * Number of rows looked up, written and committed together.
+         */
+        private int chunkSize = 500;
+
+        /**
+         * Threads hashing the generated passwords of new users, apart from the ones serving token requests.
+         */
+        private int hashingThreads = 2;
+
+        public int getChunkSize() {
+            return chunkSize;
         }
 
-        public void setClients(Clients clients) {
-            this.clients = clients;
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getHashingThreads() {
+            return hashingThreads;
+        }
+
+        public void setHashingThreads(int hashingThreads) {
+            this.hashingThreads = hashingThreads;
         }
     }
 
-    public static class Clients {
-        private boolean useJdbc = false;
+    public static class UserExport {
 
-        public boolean isUseJdbc() {
-            return useJdbc;
+        /**
+         * Number of users loaded together while streaming the user export.
+         */
+        private int chunkSize = 500;
+
+        /**
+         * Upper bound on the size of a keyset paginated page of users.
+         */
+        private int maxPageSize = 2000;
+
+        public int getChunkSize() {
+            return chunkSize;
         }
 
-        public void setUseJdbc(boolean useJdbc) {
-            this.useJdbc = useJdbc;
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+    }
+
+    public static class Audit {
+
+        private AuditWriter writer = new AuditWriter();
+
+        private Retention retention = new Retention();
+
+        private AuditExport export = new AuditExport();
+
+        public AuditWriter getWriter() {
+            return writer;
+        }
+
+        public void setWriter(AuditWriter writer) {
+            this.writer = writer;
+        }
+
+        public Retention getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Retention retention) {
+            this.retention = retention;
+        }
+
+        public AuditExport getExport() {
+            return export;
+        }
+
+        public void setExport(AuditExport export) {
+            this.export = export;
+        }
+    }
+
+    public static class ProfilePicture {
+
+        /**
+         * S3 needs com.ixortalk.s3.default-bucket, local storage needs nothing but a directory.
+         */
+        private Storage storage = Storage.S3;
+
+        private LocalStorage localStorage = new LocalStorage();
+
+        private DiskCache diskCache = new DiskCache();
+
+        private Thumbnails thumbnails = new Thumbnails();
+
+        private Redirect redirect = new Redirect();
+
+        public Storage getStorage() {
+            return storage;
+        }
+
+        public void setStorage(Storage storage) {
+            this.storage = storage;
+        }
+
+        public LocalStorage getLocalStorage() {
+            return localStorage;
+        }
+
+        public void setLocalStorage(LocalStorage localStorage) {
+            this.localStorage = localStorage;
+        }
+
+        public DiskCache getDiskCache() {
+            return diskCache;
+        }
+
+        public void setDiskCache(DiskCache diskCache) {
+            this.diskCache = diskCache;
+        }
+
+        public Thumbnails getThumbnails() {
+            return thumbnails;
+        }
+
+        public void setThumbnails(Thumbnails thumbnails) {
+            this.thumbnails = thumbnails;
+        }
+
+        public Redirect getRedirect() {
+            return redirect;
+        }
+
+        public void setRedirect(Redirect redirect) {
+            this.redirect = redirect;
+        }
+    }
+
+    public static class Redirect {
+
+        /**
+         * When enabled profile pictures are not served by the auth server, clients are redirected to S3 instead.
+         */
+        private boolean enabled = false;
+
+        /**
+         * When enabled user details link to S3 directly, only for clients that fetch the picture soon after.
+         */
+        private boolean directUrls = false;
+
+        private int expirySeconds = 900;
+
+        /**
+         * A presigned URL is handed out until this long before it expires, then a fresh one is signed.
+         */
+        private int renewalMarginSeconds = 300;
+
+        private long maximumSize = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isDirectUrls() {
+            return directUrls;
+        }
+
+        public void setDirectUrls(boolean directUrls) {
+            this.directUrls = directUrls;
+        }
+
+        public int getExpirySeconds() {
+            return expirySeconds;
+        }
+
+        public void setExpirySeconds(int expirySeconds) {
+            this.expirySeconds = expirySeconds;
+        }
+
+        public int getRenewalMarginSeconds() {
+            return renewalMarginSeconds;
+        }
+
+        public void setRenewalMarginSeconds(int renewalMarginSeconds) {
+            this.renewalMarginSeconds = renewalMarginSeconds;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    public enum Storage {
+        S3, LOCAL
+    }
+
+    public static class LocalStorage {
+
+        private String directory = "profile-pictures";
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+    }
+
+    public static class Thumbnails {
+
+        /**
+         * Longest side in pixels of every thumbnail generated for an uploaded profile picture.
+         */
+        private List<Integer> sizes = newArrayList(32, 64, 128, 512);
+
+        private int threads = 2;
+
+        /**
+         * Uploads waiting for their thumbnails beyond this are served without thumbnails.
+         */
+        private int queueCapacity = 100;
+
+        public List<Integer> getSizes() {
+            return sizes;
+        }
+
+        public void setSizes(List<Integer> sizes) {
+            this.sizes = sizes;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class DiskCache {
+
+        private boolean enabled = true;
+
+        private String directory = System.getProperty("java.io.tmpdir") + "/ixortalk-profile-pictures";
+
+        /**
+         * Total size of the cached pictures, the least recently used pictures are deleted beyond it.
+         */
+        private long maxSizeBytes = 256 * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getMaxSizeBytes() {
+            return maxSizeBytes;
+        }
+
+        public void setMaxSizeBytes(long maxSizeBytes) {
+            this.maxSizeBytes = maxSizeBytes;
+        }
+    }
+
+    public static class AuditExport {
+
+        /**
+         * Number of rows the JDBC driver fetches per round trip while streaming an export, MySQL only streams with
+         * useCursorFetch=true on the connection URL.
+         */
+        private int fetchSize = 1000;
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+    }
+
+    public static class Retention {
+
+        /**
+         * Off by default: once enabled, the next run deletes every audit event older than its maximum age, also the
+         * ones written before the job was configured.
+         */
+        private boolean enabled = false;
+
+        private String cron = "0 30 2 * * ?";
+
+        /**
+         * Age after which audit events of a type without its own maximum age are deleted.
+         */
+        private int maxAgeDays = 365;
+
+        /**
+         * Maximum age per audit event type, e.g. to keep failed logins longer than successful ones.
+         */
+        private Map<String, Integer> maxAgeDaysByType = newHashMap();
+
+        /**
+         * Maximum number of audit events deleted per transaction.
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * Pause between two chunks, keeps the job from hogging the audit tables.
+         */
+        private long pauseMillis = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getMaxAgeDays() {
+            return maxAgeDays;
+        }
+
+        public void setMaxAgeDays(int maxAgeDays) {
+            this.maxAgeDays = maxAgeDays;
+        }
+
+        public Map<String, Integer> getMaxAgeDaysByType() {
+            return maxAgeDaysByType;
+        }
+
+        public void setMaxAgeDaysByType(Map<String, Integer> maxAgeDaysByType) {
+            this.maxAgeDaysByType = maxAgeDaysByType;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public long getPauseMillis() {
+            return pauseMillis;
+        }
+
+        public void setPauseMillis(long pauseMillis) {
+            this.pauseMillis = pauseMillis;
+        }
+    }
+
+    public static class AuditWriter {
+
+        /**
+         * When disabled every audit event is written on the thread that raised it.
+         */
+        private boolean enabled = true;
+
+        private long flushIntervalMillis = 1000;
+
+        private int batchSize = 100;
+
+        private int queueCapacity = 10000;
+
+        /**
+         * What happens to an audit event raised while the queue is full.
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.WRITE_SYNCHRONOUSLY;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
         }
 
+        public void setFlushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public enum OverflowPolicy {
+            DROP, WRITE_SYNCHRONOUSLY
+        }
+    }
+
+    public static class Mail {
+
+        private Outbox outbox = new Outbox();
+
+        public Outbox getOutbox() {
+            return outbox;
+        }
+
+        public void setOutbox(Outbox outbox) {
+            this.outbox = outbox;
+        }
+    }
+
+    public static class Outbox {
+
+        private boolean enabled = true;
+
+        private long pollIntervalMillis = 1000;
+
+        private int batchSize = 50;
+
+        /**
+         * Maximum number of mails handed to the mailing service at the same time.
+         */
+        private int concurrency = 4;
+
+        /**
+         * After this many failed attempts a mail stays in the outbox without being retried.
+         */
+        private int maxAttempts = 10;
+
+        private int initialBackoffSeconds = 30;
+
+        private int maxBackoffSeconds = 3600;
+
+        /**
+         * How long a claimed mail is hidden from other nodes, it is retried after this when its node dies mid-send.
+         */
+        private int leaseSeconds = 300;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getPollIntervalMillis() {
+            return pollIntervalMillis;
+        }
+
+        public void setPollIntervalMillis(long pollIntervalMillis) {
+            this.pollIntervalMillis = pollIntervalMillis;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public int getInitialBackoffSeconds() {
+            return initialBackoffSeconds;
+        }
+
+        public void setInitialBackoffSeconds(int initialBackoffSeconds) {
+            this.initialBackoffSeconds = initialBackoffSeconds;
+        }
+
+        public int getMaxBackoffSeconds() {
+            return maxBackoffSeconds;
+        }
+
+        public void setMaxBackoffSeconds(int maxBackoffSeconds) {
+            this.maxBackoffSeconds = maxBackoffSeconds;
+        }
+
+        public int getLeaseSeconds() {
+            return leaseSeconds;
+        }
+
+        public void setLeaseSeconds(int leaseSeconds) {
+            this.leaseSeconds = leaseSeconds;
+        }
+    }
+
+    public static class Feign {
+
+        /**
+         * A token expiring within this margin is replaced before the next call, so it cannot expire in flight.
+         */
+        private int tokenRefreshMarginSeconds = 30;
+
+        public int getTokenRefreshMarginSeconds() {
+            return tokenRefreshMarginSeconds;
+        }
+
+        public void setTokenRefreshMarginSeconds(int tokenRefreshMarginSeconds) {
+            this.tokenRefreshMarginSeconds = tokenRefreshMarginSeconds;
+        }
+    }
+
+    public static class Security {
+
+        private CredentialCache credentialCache = new CredentialCache();
+
+        private RateLimit rateLimit = new RateLimit();
+
+        public CredentialCache getCredentialCache() {
+            return credentialCache;
+        }
+
+        public void setCredentialCache(CredentialCache credentialCache) {
+            this.credentialCache = credentialCache;
+        }
+
+        public RateLimit getRateLimit() {
+            return rateLimit;
+        }
+
+        public void setRateLimit(RateLimit rateLimit) {
+            this.rateLimit = rateLimit;
+        }
+    }
+
+    public static class RateLimit {
+
+        public enum Store {
+            LOCAL, JDBC
+        }
+
+        /**
+         * Off by default: behind a proxy the address bucket only works once {@link #trustedProxies} is set, or the
+         * servlet container resolves the remote address from the forwarded headers itself.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Regular expression matching the addresses of the proxies in front of the server. Attempts coming through
+         * them are throttled on the address in X-Forwarded-For instead, left empty that header is never trusted.
+         */
+        private String trustedProxies = "";
+
+        /**
+         * LOCAL limits every node on its own, JDBC shares the limits of all nodes through the database.
+         */
+        private Store store = Store.LOCAL;
+
+        /**
+         * After this long without attempts a bucket is full again, so it is dropped.
+         */
+        private int idleSeconds = 3600;
+
+        private long maximumSize = 100000;
+
+        /**
+         * Number of locks guarding the in-memory buckets.
+         */
+        private int stripes = 64;
+
+        /**
+         * Failed attempts per client id.
+         */
+        private Bucket client = new Bucket(200, 100);
+
+        /**
+         * Failed attempts per login.
+         */
+        private Bucket login = new Bucket(10, 0.1);
+
+        /**
+         * All attempts per remote address.
+         */
+        private Bucket address = new Bucket(50, 5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTrustedProxies() {
+            return trustedProxies;
+        }
+
+        public void setTrustedProxies(String trustedProxies) {
+            this.trustedProxies = trustedProxies;
+        }
+
+        public Store getStore() {
+            return store;
+        }
+
+        public void setStore(Store store) {
+            this.store = store;
+        }
+
+        public int getIdleSeconds() {
+            return idleSeconds;
+        }
+
+        public void setIdleSeconds(int idleSeconds) {
+            this.idleSeconds = idleSeconds;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        public Bucket getClient() {
+            return client;
+        }
+
+        public void setClient(Bucket client) {
+            this.client = client;
+        }
+
+        public Bucket getLogin() {
+            return login;
+        }
+
+        public void setLogin(Bucket login) {
+            this.login = login;
+        }
+
+        public Bucket getAddress() {
+            return address;
+        }
+
+        public void setAddress(Bucket address) {
+            this.address = address;
+        }
+    }
+
+    public static class Bucket {
+
+        /**
+         * Number of attempts allowed in a burst.
+         */
+        private int capacity;
+
+        /**
+         * Number of attempts added back every second, up to the capacity.
+         */
+        private double refillPerSecond;
+
+        public Bucket() {
+        }
+
+        public Bucket(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+
+    public static class CredentialCache {
+
+        private boolean enabled = false;
+
+        /**
+         * How long a verified password is trusted without running the password encoder again.
+         */
+        private int timeToLiveSeconds = 60;
+
+        private long maximumSize = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    public static class OAuth {
+
+        private Clients clients = new Clients();
+
+        private TokenStoreConfig tokenStore = new TokenStoreConfig();
+
+        private Jwt jwt = new Jwt();
+
+        public Clients getClients() {
+            return clients;
+        }
+
+        public void setClients(Clients clients) {
+            this.clients = clients;
+        }
+
+        public TokenStoreConfig getTokenStore() {
+            return tokenStore;
+        }
+
+        public void setTokenStore(TokenStoreConfig tokenStore) {
+            this.tokenStore = tokenStore;
+        }
+
+        public Jwt getJwt() {
+            return jwt;
+        }
+
+        public void setJwt(Jwt jwt) {
+            this.jwt = jwt;
+        }
+    }
+
+    public static class Jwt {
+
+        private boolean enabled = false;
+
+        private String keyStore;
+
+        private String keyStorePassword;
+
+        /**
+         * Alias of the key pair used to sign new tokens.
+         */
+        private String activeKey;
+
+        /**
+         * Aliases of previous key pairs that are still published, so tokens they signed stay valid during a rotation.
+         */
+        private List<String> retiredKeys = newArrayList();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getKeyStore() {
+            return keyStore;
+        }
+
+        public void setKeyStore(String keyStore) {
+            this.keyStore = keyStore;
+        }
+
+        public String getKeyStorePassword() {
+            return keyStorePassword;
+        }
+
+        public void setKeyStorePassword(String keyStorePassword) {
+            this.keyStorePassword = keyStorePassword;
+        }
+
+        public String getActiveKey() {
+            return activeKey;
+        }
+
+        public void setActiveKey(String activeKey) {
+            this.activeKey = activeKey;
+        }
+
+        public List<String> getRetiredKeys() {
+            return retiredKeys;
+        }
+
+        public void setRetiredKeys(List<String> retiredKeys) {
+            this.retiredKeys = retiredKeys;
+        }
+    }
+
+    public static class TokenStoreConfig {
+
+        private TokenCache cache = new TokenCache();
+
+        private WriteBehind writeBehind = new WriteBehind();
+
+        private Reaper reaper = new Reaper();
+
+        /**
+         * Format new tokens are written in, both formats are always readable. Only switch to compact once every node
+         * runs a version that can read it.
+         */
+        private TokenSerializerType serializer = TokenSerializerType.JAVA;
+
+        public TokenCache getCache() {
+            return cache;
+        }
+
+        public void setCache(TokenCache cache) {
+            this.cache = cache;
+        }
+
+        public WriteBehind getWriteBehind() {
+            return writeBehind;
+        }
+
+        public void setWriteBehind(WriteBehind writeBehind) {
+            this.writeBehind = writeBehind;
+        }
+
+        public Reaper getReaper() {
+            return reaper;
+        }
+
+        public void setReaper(Reaper reaper) {
+            this.reaper = reaper;
+        }
+
+        public TokenSerializerType getSerializer() {
+            return serializer;
+        }
+
+        public void setSerializer(TokenSerializerType serializer) {
+            this.serializer = serializer;
+        }
+    }
+
+    public enum TokenSerializerType {
+        JAVA, COMPACT
+    }
+
+    public static class TokenCache {
+
+        private long maximumSize = 10000;
+
+        /**
+         * Upper bound for how long another node's revocation can go unnoticed, keep it short in multi-node setups.
+         */
+        private int timeToLiveSeconds = 60;
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
+    public static class WriteBehind {
+
+        /**
+         * Only enable when tokens are validated by the node that issued them, other nodes won't see a token before it is flushed.
+         */
+        private boolean enabled = false;
+
+        private long flushIntervalMillis = 500;
+
+        private int batchSize = 100;
+
+        private int queueCapacity = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public void setFlushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class Reaper {
+
+        private boolean enabled = true;
+
+        private String cron = "0 */15 * * * ?";
+
+        /**
+         * Maximum number of rows deleted per statement.
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * Pause between two chunks, gives concurrent token requests a chance to acquire their locks.
+         */
+        private long pauseMillis = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public long getPauseMillis() {
+            return pauseMillis;
+        }
+
+        public void setPauseMillis(long pauseMillis) {
+            this.pauseMillis = pauseMillis;
+        }
+    }
+
+    public static class Clients {
+        private boolean useJdbc = false;
+
+        private ClientCache cache = new ClientCache();
+
+        public boolean isUseJdbc() {
+            return useJdbc;
+        }
+
+        public void setUseJdbc(boolean useJdbc) {
+            this.useJdbc = useJdbc;
+        }
+
+        public ClientCache getCache() {
+            return cache;
+        }
+
+        public void setCache(ClientCache cache) {
+            this.cache = cache;
+        }
+    }
+
+    public static class ClientCache {
+
+        private boolean enabled = true;
+
+        private int timeToLiveSeconds = 300;
+
+        private long maximumSize = 1000;
+
+        /**
+         * How often the shared client version is polled, bounds how long a change made on another node goes unnoticed.
+         */
+        private long versionCheckIntervalMillis = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getVersionCheckIntervalMillis() {
+            return versionCheckIntervalMillis;
+        }
+
+        public void setVersionCheckIntervalMillis(long versionCheckIntervalMillis) {
+            this.versionCheckIntervalMillis = versionCheckIntervalMillis;
+        }
     }
 
     public static class LoadbalancerConfig {
@@ -157,6 +157,13 @@ public class JHipsterProperties {
 
         private int timeToLiveSeconds = 3600;
 
+        private long maximumSize = 1000;
+
+        /**
+         * Per cache overrides of the default time to live and maximum size, by cache name.
+         */
+        private Map<String, CacheSpec> caches = newHashMap();
+
         public int getTimeToLiveSeconds() {
             return timeToLiveSeconds;
         }
@@ -164,6 +171,53 @@ public class JHipsterProperties {
         public void setTimeToLiveSeconds(int timeToLiveSeconds) {
             this.timeToLiveSeconds = timeToLiveSeconds;
         }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Map<String, CacheSpec> getCaches() {
+            return caches;
+        }
+
+        public void setCaches(Map<String, CacheSpec> caches) {
+            this.caches = caches;
+        }
+
+        public int getTimeToLiveSeconds(String cacheName) {
+            return caches.containsKey(cacheName) && caches.get(cacheName).getTimeToLiveSeconds() != null ? caches.get(cacheName).getTimeToLiveSeconds() : timeToLiveSeconds;
+        }
+
+        public long getMaximumSize(String cacheName) {
+            return caches.containsKey(cacheName) && caches.get(cacheName).getMaximumSize() != null ? caches.get(cacheName).getMaximumSize() : maximumSize;
+        }
+
+        public static class CacheSpec {
+
+            private Integer timeToLiveSeconds;
+
+            private Long maximumSize;
+
+            public Integer getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(Integer timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public Long getMaximumSize() {
+                return maximumSize;
+            }
+
+            public void setMaximumSize(Long maximumSize) {
+                this.maximumSize = maximumSize;
+            }
+        }
     }
 
     public static class Mail {
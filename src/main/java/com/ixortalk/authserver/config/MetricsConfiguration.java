@@ -33,13 +33,19 @@ import com.codahale.metrics.health.HealthCheckRegistry;
 import com.codahale.metrics.jvm.*;
 import com.ryantenney.metrics.spring.config.annotation.EnableMetrics;
 import com.ryantenney.metrics.spring.config.annotation.MetricsConfigurerAdapter;
+import com.ixortalk.authserver.web.filter.OAuthRequestMetricsFilter;
 import fr.ippon.spark.metrics.SparkReporter;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.dropwizard.DropwizardExports;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.*;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
@@ -101,6 +107,43 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
         }
     }
 
+    /**
+     * Registered in front of the authentication rate limiter, so throttled token requests are timed as well.
+     */
+    @Bean
+    public FilterRegistrationBean oauthRequestMetricsFilter() {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new OAuthRequestMetricsFilter(metricRegistry));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 2);
+        return registration;
+    }
+
+    /**
+     * Exposes the Dropwizard metrics on the Prometheus endpoint, timers become summaries with their quantiles.
+     */
+    @Configuration
+    @ConditionalOnClass(DropwizardExports.class)
+    public static class PrometheusRegistry {
+
+        private final Logger log = LoggerFactory.getLogger(PrometheusRegistry.class);
+
+        @Inject
+        private MetricRegistry metricRegistry;
+
+        private DropwizardExports dropwizardExports;
+
+        @Bean
+        public DropwizardExports dropwizardExports() {
+            log.debug("Initializing Metrics Prometheus exposition");
+            dropwizardExports = new DropwizardExports(metricRegistry).register();
+            return dropwizardExports;
+        }
+
+        @PreDestroy
+        private void destroy() {
+            CollectorRegistry.defaultRegistry.unregister(dropwizardExports);
+        }
+    }
+
     @Configuration
     @ConditionalOnClass(Graphite.class)
     public static class GraphiteRegistry {
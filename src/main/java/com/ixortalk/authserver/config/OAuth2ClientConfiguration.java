@@ -0,0 +1,54 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.feign.OAuth2AccessTokenHolder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.OAuth2RestTemplate;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+
+/**
+ * Beans shared by the Feign clients, {@link OAuth2ServiceFeignConfiguration} itself is instantiated once per client.
+ */
+@Configuration
+public class OAuth2ClientConfiguration {
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Bean
+    public OAuth2AccessTokenHolder oAuth2AccessTokenHolder(OAuth2ProtectedResourceDetails resource) {
+        return new OAuth2AccessTokenHolder(
+            () -> new OAuth2RestTemplate(resource).getAccessToken(),
+            ixorTalkProperties.getFeign().getTokenRefreshMarginSeconds(),
+            metricRegistry);
+    }
+}
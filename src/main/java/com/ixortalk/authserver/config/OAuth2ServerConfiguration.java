@@ -23,22 +23,42 @@
  */
 package com.ixortalk.authserver.config;
 
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Inject;
 import javax.sql.DataSource;
 
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.security.CachingClientDetailsService;
+import com.ixortalk.authserver.security.token.CachingTokenStore;
+import com.ixortalk.authserver.security.token.CompactTokenSerializer;
+import com.ixortalk.authserver.security.token.ExpiringJdbcTokenStore;
+import com.ixortalk.authserver.security.token.JavaTokenSerializer;
+import com.ixortalk.authserver.security.token.MeteredTokenStore;
+import com.ixortalk.authserver.security.token.RotatingJwtAccessTokenConverter;
+import com.ixortalk.authserver.security.token.TokenSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.autoconfigure.ManagementServerProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.configurers.ExpressionUrlAuthorizationConfigurer;
+import org.springframework.security.oauth2.config.annotation.builders.ClientDetailsServiceBuilder;
 import org.springframework.security.oauth2.config.annotation.configurers.ClientDetailsServiceConfigurer;
 import org.springframework.security.oauth2.config.annotation.web.configuration.AuthorizationServerConfigurerAdapter;
 import org.springframework.security.oauth2.config.annotation.web.configuration.EnableAuthorizationServer;
@@ -46,10 +66,12 @@ import org.springframework.security.oauth2.config.annotation.web.configuration.E
 import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerEndpointsConfigurer;
 import org.springframework.security.oauth2.config.annotation.web.configurers.AuthorizationServerSecurityConfigurer;
 import org.springframework.security.oauth2.provider.ClientDetails;
+import org.springframework.security.oauth2.provider.ClientDetailsService;
 import org.springframework.security.oauth2.provider.client.JdbcClientDetailsService;
-import org.springframework.security.oauth2.provider.token.TokenStore;
-import org.springframework.security.oauth2.provider.token.store.JdbcTokenStore;
+import org.springframework.security.oauth2.provider.token.store.JwtTokenStore;
+import org.springframework.security.oauth2.provider.token.store.KeyStoreKeyFactory;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.stream.Collectors.toSet;
@@ -67,6 +89,10 @@ public class OAuth2ServerConfiguration {
     @Order(LOWEST_PRECEDENCE - 2)
     protected static class AuthorizationServerConfiguration extends AuthorizationServerConfigurerAdapter {
 
+        private static final Logger LOGGER = LoggerFactory.getLogger(AuthorizationServerConfiguration.class);
+
+        private static final String EPHEMERAL_KEY_ID = "ephemeral";
+
         @Inject
         private DataSource dataSource;
 
@@ -76,9 +102,63 @@ public class OAuth2ServerConfiguration {
         @Inject
         private IxorTalkProperties ixorTalkProperties;
 
+        @Inject
+        private PlatformTransactionManager transactionManager;
+
+        @Inject
+        private MetricRegistry metricRegistry;
+
+        @Bean
+        @ConditionalOnProperty(name = "ixortalk.oauth.jwt.enabled", havingValue = "false", matchIfMissing = true)
+        public CachingTokenStore tokenStore() {
+            return new CachingTokenStore(
+                new MeteredTokenStore(new ExpiringJdbcTokenStore(dataSource, tokenSerializer()), metricRegistry),
+                transactionManager,
+                ixorTalkProperties.getOauth().getTokenStore());
+        }
+
+        private TokenSerializer tokenSerializer() {
+            switch (ixorTalkProperties.getOauth().getTokenStore().getSerializer()) {
+                case COMPACT:
+                    return new CompactTokenSerializer();
+                default:
+                    return new JavaTokenSerializer();
+            }
+        }
+
         @Bean
-        public TokenStore tokenStore() {
-            return new JdbcTokenStore(dataSource);
+        @ConditionalOnProperty("ixortalk.oauth.jwt.enabled")
+        public RotatingJwtAccessTokenConverter jwtAccessTokenConverter() {
+            IxorTalkProperties.Jwt jwt = ixorTalkProperties.getOauth().getJwt();
+            if (!hasText(jwt.getKeyStore())) {
+                LOGGER.warn("No JWT key store configured, signing tokens with an ephemeral key that will not survive a restart");
+                Map<String, KeyPair> keyPairs = new LinkedHashMap<>();
+                keyPairs.put(EPHEMERAL_KEY_ID, generateKeyPair());
+                return new RotatingJwtAccessTokenConverter(keyPairs, EPHEMERAL_KEY_ID);
+            }
+
+            KeyStoreKeyFactory keyStoreKeyFactory =
+                new KeyStoreKeyFactory(new DefaultResourceLoader().getResource(jwt.getKeyStore()), jwt.getKeyStorePassword().toCharArray());
+            Map<String, KeyPair> keyPairs = new LinkedHashMap<>();
+            keyPairs.put(jwt.getActiveKey(), keyStoreKeyFactory.getKeyPair(jwt.getActiveKey()));
+            jwt.getRetiredKeys().forEach(alias -> keyPairs.put(alias, keyStoreKeyFactory.getKeyPair(alias)));
+            return new RotatingJwtAccessTokenConverter(keyPairs, jwt.getActiveKey());
+        }
+
+        @Bean
+        @ConditionalOnProperty("ixortalk.oauth.jwt.enabled")
+        public JwtTokenStore jwtTokenStore() {
+            return new JwtTokenStore(jwtAccessTokenConverter());
+        }
+
+        private static KeyPair generateKeyPair() {
+            try {
+                KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+                keyPairGenerator.initialize(2048);
+                return keyPairGenerator.generateKeyPair();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Cannot generate RSA key pair", e);
+            }
         }
 
         @Inject
@@ -88,9 +168,14 @@ public class OAuth2ServerConfiguration {
         @Override
         public void configure(AuthorizationServerEndpointsConfigurer endpoints) {
 
-            endpoints
-                .tokenStore(tokenStore())
-                .authenticationManager(authenticationManager);
+            if (ixorTalkProperties.getOauth().getJwt().isEnabled()) {
+                endpoints
+                    .tokenStore(jwtTokenStore())
+                    .accessTokenConverter(jwtAccessTokenConverter());
+            } else {
+                endpoints.tokenStore(tokenStore());
+            }
+            endpoints.authenticationManager(authenticationManager);
         }
 
         @Override
@@ -101,8 +186,8 @@ public class OAuth2ServerConfiguration {
         @Override
         public void configure(ClientDetailsServiceConfigurer clients) throws Exception {
             if (ixorTalkProperties.getOauth().getClients().isUseJdbc()) {
-                clients.jdbc(dataSource);
                 cleanUpClientsFromConfiguration();
+                clients.setBuilder(new CachingClientDetailsServiceBuilder(cachingClientDetailsService()));
             } else {
                 clients.inMemory();
 
@@ -123,12 +208,40 @@ public class OAuth2ServerConfiguration {
         }
 
         public void cleanUpClientsFromConfiguration() {
-            JdbcClientDetailsService jdbcClientDetailsService = new JdbcClientDetailsService(dataSource);
-            Set<String> existingClientIds = jdbcClientDetailsService.listClientDetails().stream().map(ClientDetails::getClientId).collect(toSet());
+            CachingClientDetailsService clientDetailsService = cachingClientDetailsService();
+            Set<String> existingClientIds = clientDetailsService.listClientDetails().stream().map(ClientDetails::getClientId).collect(toSet());
             jHipsterProperties.getSecurity().getAuthentication().getOauthClients().values()
                 .stream()
                 .filter(client -> existingClientIds.contains(client.getClientid()))
-                .forEach(client -> jdbcClientDetailsService.removeClientDetails(client.getClientid()));
+                .forEach(client -> clientDetailsService.removeClientDetails(client.getClientid()));
+        }
+
+        @Bean
+        public CachingClientDetailsService cachingClientDetailsService() {
+            return new CachingClientDetailsService(new JdbcClientDetailsService(dataSource), new JdbcTemplate(dataSource), ixorTalkProperties.getOauth().getClients().getCache());
+        }
+
+        /**
+         * Stores the configured clients through the {@link CachingClientDetailsService} and hands it out as the
+         * authorization server's client details service.
+         */
+        private static class CachingClientDetailsServiceBuilder extends ClientDetailsServiceBuilder<CachingClientDetailsServiceBuilder> {
+
+            private final CachingClientDetailsService clientDetailsService;
+
+            private CachingClientDetailsServiceBuilder(CachingClientDetailsService clientDetailsService) {
+                this.clientDetailsService = clientDetailsService;
+            }
+
+            @Override
+            protected void addClient(String clientId, ClientDetails build) {
+                clientDetailsService.addClientDetails(build);
+            }
+
+            @Override
+            protected ClientDetailsService performBuild() {
+                return clientDetailsService;
+            }
         }
 
         @Configuration
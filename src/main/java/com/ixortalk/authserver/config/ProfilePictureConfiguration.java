@@ -0,0 +1,96 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.service.profilepicture.LocalProfilePictureStorage;
+import com.ixortalk.authserver.service.profilepicture.PresignedProfilePictureUrls;
+import com.ixortalk.authserver.service.profilepicture.ProfilePictureDiskCache;
+import com.ixortalk.authserver.service.profilepicture.ProfilePictureStorage;
+import com.ixortalk.authserver.service.profilepicture.S3ProfilePictureStorage;
+import com.ixortalk.aws.s3.library.config.AwsS3Template;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Conditional(ProfilePictureConfiguration.OnProfilePictureStorage.class)
+public class ProfilePictureConfiguration {
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Autowired(required = false)
+    private AwsS3Template awsS3Template;
+
+    @Bean
+    public ProfilePictureStorage profilePictureStorage() throws IOException {
+        IxorTalkProperties.ProfilePicture profilePicture = ixorTalkProperties.getProfilePicture();
+        switch (profilePicture.getStorage()) {
+            case LOCAL:
+                return new LocalProfilePictureStorage(Paths.get(profilePicture.getLocalStorage().getDirectory()));
+            default:
+                return new S3ProfilePictureStorage(awsS3Template, profilePicture.getDiskCache().isEnabled()
+                    ? Optional.of(new ProfilePictureDiskCache(ixorTalkProperties, metricRegistry))
+                    : Optional.empty());
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "ixortalk.profile-picture", name = "storage", havingValue = "s3", matchIfMissing = true)
+    public PresignedProfilePictureUrls presignedProfilePictureUrls() {
+        return new PresignedProfilePictureUrls();
+    }
+
+    /**
+     * Profile pictures are stored in S3 when a default bucket is configured, or on local disk when asked for.
+     * Without either, there are no profile picture endpoints.
+     */
+    public static class OnProfilePictureStorage extends AnyNestedCondition {
+
+        OnProfilePictureStorage() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnProperty("com.ixortalk.s3.default-bucket")
+        static class S3Bucket {
+        }
+
+        @ConditionalOnProperty(prefix = "ixortalk.profile-picture", name = "storage", havingValue = "local")
+        static class LocalStorage {
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.ixortalk.authserver.security.ratelimit.JdbcRateLimiter;
+import com.ixortalk.authserver.security.ratelimit.LocalRateLimiter;
+import com.ixortalk.authserver.security.ratelimit.RateLimiter;
+import com.ixortalk.authserver.web.filter.AuthenticationRateLimitFilter;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+public class RateLimitConfiguration {
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Bean
+    public RateLimiter authenticationRateLimiter(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        IxorTalkProperties.RateLimit rateLimit = ixorTalkProperties.getSecurity().getRateLimit();
+        switch (rateLimit.getStore()) {
+            case JDBC:
+                return new JdbcRateLimiter(new JdbcTemplate(dataSource), transactionManager, rateLimit);
+            default:
+                return new LocalRateLimiter(rateLimit, Ticker.systemTicker());
+        }
+    }
+
+    /**
+     * Registered right in front of the Spring Security filter chain, so throttled attempts never reach the password
+     * encoder.
+     */
+    @Bean
+    public FilterRegistrationBean authenticationRateLimitFilter(RateLimiter authenticationRateLimiter) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(
+            new AuthenticationRateLimitFilter(authenticationRateLimiter, ixorTalkProperties.getSecurity().getRateLimit(), metricRegistry));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+}
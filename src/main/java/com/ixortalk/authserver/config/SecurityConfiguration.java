@@ -24,6 +24,9 @@
 package com.ixortalk.authserver.config;
 
 
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.security.CachingPasswordEncoder;
+import com.ixortalk.authserver.security.MeteredPasswordEncoder;
 import org.springframework.boot.actuate.autoconfigure.ManagementServerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -38,7 +41,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.data.repository.query.SecurityEvaluationContextExtension;
 
@@ -56,9 +58,17 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Inject
     private UserDetailsService userDetailsService;
 
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public CachingPasswordEncoder passwordEncoder() {
+        return new CachingPasswordEncoder(
+            new MeteredPasswordEncoder(new BCryptPasswordEncoder(), metricRegistry.timer(MetricRegistry.name(BCryptPasswordEncoder.class, "matches"))),
+            ixorTalkProperties.getSecurity().getCredentialCache());
     }
 
     @Inject
@@ -83,6 +93,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .antMatchers("/api/account/reset_password/init")
             .antMatchers("/api/account/reset_password/finish")
             .antMatchers("/api/profile-pictures/*")
+            .antMatchers("/.well-known/jwks.json")
             .antMatchers("/test/**")
             .antMatchers("/h2-console/**");
     }
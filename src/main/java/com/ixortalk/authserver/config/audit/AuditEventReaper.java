@@ -0,0 +1,165 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config.audit;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Deletes audit events that are older than their retention period.
+ * <p>
+ * Every audit event type can have its own maximum age, other types fall back to the default one. Events are deleted in
+ * chunks, together with their data, each chunk in its own short transaction with a pause in between.
+ * </p>
+ */
+@Component
+public class AuditEventReaper {
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventReaper.class);
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Counter deleted;
+
+    private Timer duration;
+
+    @PostConstruct
+    public void init() {
+        namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        deleted = metricRegistry.counter(name(AuditEventReaper.class, "deleted"));
+        duration = metricRegistry.timer(name(AuditEventReaper.class, "duration"));
+    }
+
+    /**
+     * Audit events past their retention period should be removed regularly.
+     * <p>
+     * This is scheduled to get fired every night at 02:30 by default.
+     * </p>
+     */
+    @Scheduled(cron = "${ixortalk.audit.retention.cron:0 30 2 * * ?}")
+    public void removeExpiredEvents() {
+        IxorTalkProperties.Retention retention = getRetention();
+        if (!retention.isEnabled()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Integer> maxAgeDaysByType = retention.getMaxAgeDaysByType();
+        try (Timer.Context ignored = duration.time()) {
+            long total = 0;
+            for (Map.Entry<String, Integer> maxAgeDays : maxAgeDaysByType.entrySet()) {
+                total += reap(
+                    "event_type = :type and event_date < :before",
+                    new MapSqlParameterSource("type", maxAgeDays.getKey()).addValue("before", before(now, maxAgeDays.getValue())));
+            }
+            total += reap(
+                maxAgeDaysByType.isEmpty() ? "event_date < :before" : "event_date < :before and event_type not in (:types)",
+                new MapSqlParameterSource("before", before(now, retention.getMaxAgeDays())).addValue("types", maxAgeDaysByType.keySet()));
+            log.debug("Deleted {} audit events past their retention period", total);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long reap(String condition, MapSqlParameterSource parameters) throws InterruptedException {
+        NamedParameterJdbcTemplate chunkQuery = chunkQuery();
+        long total = 0;
+        List<Long> eventIds;
+        do {
+            eventIds = chunkQuery.queryForList("select event_id from jhi_persistent_audit_event where " + condition, parameters, Long.class);
+            if (!eventIds.isEmpty()) {
+                int count = deleteEvents(eventIds);
+                deleted.inc(count);
+                total += count;
+                pause();
+            }
+        } while (eventIds.size() == getRetention().getChunkSize());
+        return total;
+    }
+
+    private int deleteEvents(List<Long> eventIds) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("eventIds", eventIds);
+        return transactionTemplate.execute(status -> {
+            namedParameterJdbcTemplate.update("delete from jhi_persistent_audit_evt_data where event_id in (:eventIds)", parameters);
+            return namedParameterJdbcTemplate.update("delete from jhi_persistent_audit_event where event_id in (:eventIds)", parameters);
+        });
+    }
+
+    private NamedParameterJdbcTemplate chunkQuery() {
+        JdbcTemplate chunkQuery = new JdbcTemplate(dataSource);
+        chunkQuery.setMaxRows(getRetention().getChunkSize());
+        return new NamedParameterJdbcTemplate(chunkQuery);
+    }
+
+    private static Timestamp before(LocalDateTime now, int maxAgeDays) {
+        return Timestamp.valueOf(now.minusDays(maxAgeDays));
+    }
+
+    private IxorTalkProperties.Retention getRetention() {
+        return ixorTalkProperties.getAudit().getRetention();
+    }
+
+    private void pause() throws InterruptedException {
+        long pauseMillis = getRetention().getPauseMillis();
+        if (pauseMillis > 0) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+}
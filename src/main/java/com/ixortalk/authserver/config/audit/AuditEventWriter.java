@@ -0,0 +1,148 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config.audit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.domain.PersistentAuditEvent;
+import com.ixortalk.authserver.repository.PersistenceAuditEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.Collections.singletonList;
+
+/**
+ * Writes audit events off the request thread.
+ * <p>
+ * Events are put on a bounded queue and written in batches every flush interval, each batch in a single transaction
+ * so the inserts can share JDBC batches.
+ * When the queue is full the overflow policy decides between dropping the event and writing it on the calling thread.
+ * Whatever is still queued is written when the application shuts down.
+ * </p>
+ */
+@Component
+public class AuditEventWriter {
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventWriter.class);
+
+    @Inject
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<PersistentAuditEvent> queue;
+
+    private Timer writeLatency;
+
+    private Counter dropped;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        queue = new ArrayBlockingQueue<>(getWriter().getQueueCapacity());
+        writeLatency = metricRegistry.timer(name(AuditEventWriter.class, "write"));
+        dropped = metricRegistry.counter(name(AuditEventWriter.class, "dropped"));
+        metricRegistry.register(name(AuditEventWriter.class, "queue-depth"), (Gauge<Integer>) () -> queue.size());
+    }
+
+    public void add(PersistentAuditEvent event) {
+        if (!getWriter().isEnabled()) {
+            write(singletonList(event));
+        } else if (!queue.offer(event)) {
+            switch (getWriter().getOverflowPolicy()) {
+                case DROP:
+                    dropped.inc();
+                    log.warn("Audit event queue is full, dropped {} event of {}", event.getAuditEventType(), event.getPrincipal());
+                    break;
+                case WRITE_SYNCHRONOUSLY:
+                    write(singletonList(event));
+                    break;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ixortalk.audit.writer.flush-interval-millis:1000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * Writes queued events until the queue is empty.
+     */
+    public synchronized void flush() {
+        List<PersistentAuditEvent> batch = new ArrayList<>(getWriter().getBatchSize());
+        while (queue.drainTo(batch, getWriter().getBatchSize()) > 0) {
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                dropped.inc(batch.size());
+                log.error("Could not write {} audit events", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    private void write(List<PersistentAuditEvent> events) {
+        try (Timer.Context ignored = writeLatency.time()) {
+            transactionTemplate.execute(status -> persistenceAuditEventRepository.save(events));
+        }
+    }
+
+    private IxorTalkProperties.AuditWriter getWriter() {
+        return ixorTalkProperties.getAudit().getWriter();
+    }
+}
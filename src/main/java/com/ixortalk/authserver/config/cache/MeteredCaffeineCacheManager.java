@@ -0,0 +1,74 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ixortalk.authserver.config.JHipsterProperties;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * {@link CaffeineCacheManager} sizing each cache from {@code jhipster.cache.*} and publishing its statistics as
+ * gauges named {@code cache.<name>.*}.
+ */
+public class MeteredCaffeineCacheManager extends CaffeineCacheManager {
+
+    private final JHipsterProperties.Cache cacheProperties;
+
+    private final MetricRegistry metricRegistry;
+
+    /**
+     * @param metricRegistry may be {@code null}, statistics are not published then
+     */
+    public MeteredCaffeineCacheManager(JHipsterProperties.Cache cacheProperties, MetricRegistry metricRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    protected Cache<Object, Object> createNativeCaffeineCache(String name) {
+        Cache<Object, Object> cache = Caffeine.newBuilder()
+            .maximumSize(cacheProperties.getMaximumSize(name))
+            .expireAfterWrite(cacheProperties.getTimeToLiveSeconds(name), SECONDS)
+            .recordStats()
+            .build();
+        if (metricRegistry != null) {
+            registerGauges(name, cache);
+        }
+        return cache;
+    }
+
+    private void registerGauges(String name, Cache<Object, Object> cache) {
+        metricRegistry.register(name("cache", name, "hits"), (Gauge<Long>) () -> cache.stats().hitCount());
+        metricRegistry.register(name("cache", name, "misses"), (Gauge<Long>) () -> cache.stats().missCount());
+        metricRegistry.register(name("cache", name, "hit-ratio"), (Gauge<Double>) () -> cache.stats().hitRate());
+        metricRegistry.register(name("cache", name, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metricRegistry.register(name("cache", name, "size"), (Gauge<Long>) cache::estimatedSize);
+    }
+}
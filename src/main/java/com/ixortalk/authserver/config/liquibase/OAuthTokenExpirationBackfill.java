@@ -0,0 +1,154 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config.liquibase;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import com.ixortalk.authserver.security.token.CompactTokenSerializer;
+import com.ixortalk.authserver.security.token.TokenSerializer;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.lob.DefaultLobHandler;
+import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.security.oauth2.common.ExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+
+/**
+ * Fills in the expiration column of the OAuth tokens stored before it existed, so ExpiredTokenReaper removes them too.
+ * <p>
+ * Tokens are read with the {@link CompactTokenSerializer}, which reads both its own and the Java-serialized format.
+ * Tokens that can't be read are deleted, JdbcTokenStore would do the same the first time it reads them. Tokens that
+ * never expire keep a {@code null} expiration.
+ * </p>
+ * <p>
+ * Tokens are handled in chunks in token_id order, each chunk is committed before the next one is read. Neither the
+ * tokens nor the updates of a whole table are held in memory, and no single transaction spans the whole table.
+ * </p>
+ */
+public class OAuthTokenExpirationBackfill implements CustomTaskChange {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(OAuthTokenExpirationBackfill.class);
+
+    private final int chunkSize;
+
+    private final TokenSerializer tokenSerializer = new CompactTokenSerializer();
+
+    private final LobHandler lobHandler = new DefaultLobHandler();
+
+    private int updated;
+
+    private int deleted;
+
+    public OAuthTokenExpirationBackfill() {
+        this(CHUNK_SIZE);
+    }
+
+    OAuthTokenExpirationBackfill(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(((JdbcConnection) database.getConnection()).getUnderlyingConnection(), true));
+        jdbcTemplate.setMaxRows(chunkSize);
+        try {
+            backfill(database, jdbcTemplate, "oauth_access_token", token -> tokenSerializer.deserializeAccessToken(token).getExpiration());
+            backfill(database, jdbcTemplate, "oauth_refresh_token", token -> expiration(tokenSerializer.deserializeRefreshToken(token)));
+        } catch (RuntimeException | DatabaseException e) {
+            throw new CustomChangeException("Could not fill in the OAuth token expiration", e);
+        }
+    }
+
+    private void backfill(Database database, JdbcTemplate jdbcTemplate, String tableName, Function<byte[], Date> expiration) throws DatabaseException {
+        int tableUpdated = 0;
+        int tableDeleted = 0;
+        String lastTokenId = "";
+        while (true) {
+            List<Object[]> expirations = new ArrayList<>(chunkSize);
+            List<Object[]> unreadable = new ArrayList<>();
+            List<String> tokenIds = jdbcTemplate.query("select token_id, token from " + tableName + " where expiration is null and token_id > ? order by token_id", (resultSet, rowNum) -> {
+                String tokenId = resultSet.getString(1);
+                try {
+                    Date tokenExpiration = expiration.apply(lobHandler.getBlobAsBytes(resultSet, 2));
+                    if (tokenExpiration != null) {
+                        expirations.add(new Object[]{new Timestamp(tokenExpiration.getTime()), tokenId});
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Deleting unreadable token {} from {}: {}", tokenId, tableName, e.toString());
+                    unreadable.add(new Object[]{tokenId});
+                }
+                return tokenId;
+            }, lastTokenId);
+            if (tokenIds.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("update " + tableName + " set expiration = ? where token_id = ?", expirations);
+            jdbcTemplate.batchUpdate("delete from " + tableName + " where token_id = ?", unreadable);
+            database.commit();
+            lastTokenId = tokenIds.get(tokenIds.size() - 1);
+            tableUpdated += expirations.size();
+            tableDeleted += unreadable.size();
+        }
+        updated += tableUpdated;
+        deleted += tableDeleted;
+        log.info("Filled in the expiration of {} tokens in {}, deleted {} unreadable tokens", tableUpdated, tableName, tableDeleted);
+    }
+
+    private static Date expiration(OAuth2RefreshToken refreshToken) {
+        return refreshToken instanceof ExpiringOAuth2RefreshToken ? ((ExpiringOAuth2RefreshToken) refreshToken).getExpiration() : null;
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Filled in the expiration of " + updated + " OAuth tokens, deleted " + deleted + " unreadable tokens";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
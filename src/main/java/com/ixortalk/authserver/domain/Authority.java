@@ -25,6 +25,8 @@ package com.ixortalk.authserver.domain;
 
 
 import com.ixortalk.util.InstanceBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -39,6 +41,7 @@ import java.io.Serializable;
  */
 @Entity
 @Table(name = "jhi_authority")
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class Authority implements Serializable {
 
     private static final long serialVersionUID = 1L;
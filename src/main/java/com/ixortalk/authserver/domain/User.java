@@ -25,6 +25,8 @@ package com.ixortalk.authserver.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.ixortalk.authserver.config.Constants;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.validator.constraints.Email;
 
 import javax.persistence.*;
@@ -44,6 +46,7 @@ import static java.util.UUID.randomUUID;
  */
 @Entity
 @Table(name = "jhi_user")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class User extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -104,6 +107,7 @@ public class User extends AbstractAuditingEntity implements Serializable {
         name = "jhi_user_authority",
         joinColumns = {@JoinColumn(name = "user_id", referencedColumnName = "id")},
         inverseJoinColumns = {@JoinColumn(name = "authority_name", referencedColumnName = "name")})
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<Authority> authorities = new HashSet<>();
 
     @Column
@@ -0,0 +1,88 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.feign;
+
+import java.util.function.Supplier;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Keeps the access token used for outgoing Feign calls, shared by all threads and Feign clients.
+ * <p>
+ * The token is reused until it comes within the refresh margin of its expiration. Only one thread requests a new
+ * token at a time, threads arriving while that request is running wait for its result instead of requesting their own.
+ * </p>
+ */
+public class OAuth2AccessTokenHolder {
+
+    private final Supplier<OAuth2AccessToken> tokenSupplier;
+
+    private final long refreshMarginMillis;
+
+    private final Timer refreshes;
+
+    private final Counter failures;
+
+    private final Object refreshLock = new Object();
+
+    private volatile OAuth2AccessToken accessToken;
+
+    public OAuth2AccessTokenHolder(Supplier<OAuth2AccessToken> tokenSupplier, int refreshMarginSeconds, MetricRegistry metricRegistry) {
+        this.tokenSupplier = tokenSupplier;
+        this.refreshMarginMillis = SECONDS.toMillis(refreshMarginSeconds);
+        this.refreshes = metricRegistry.timer(name(OAuth2AccessTokenHolder.class, "refreshes"));
+        this.failures = metricRegistry.counter(name(OAuth2AccessTokenHolder.class, "failures"));
+    }
+
+    public OAuth2AccessToken getAccessToken() {
+        OAuth2AccessToken current = accessToken;
+        if (isUsable(current)) {
+            return current;
+        }
+        synchronized (refreshLock) {
+            current = accessToken;
+            if (isUsable(current)) {
+                return current;
+            }
+            try (Timer.Context ignored = refreshes.time()) {
+                current = tokenSupplier.get();
+            } catch (RuntimeException e) {
+                failures.inc();
+                throw e;
+            }
+            accessToken = current;
+            return current;
+        }
+    }
+
+    private boolean isUsable(OAuth2AccessToken token) {
+        return token != null && (token.getExpiration() == null || token.getExpiration().getTime() - System.currentTimeMillis() > refreshMarginMillis);
+    }
+}
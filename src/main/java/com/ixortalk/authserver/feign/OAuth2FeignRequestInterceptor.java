@@ -27,8 +27,6 @@ import javax.inject.Inject;
 
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
-import org.springframework.security.oauth2.client.OAuth2RestTemplate;
-import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
 
 public class OAuth2FeignRequestInterceptor implements RequestInterceptor {
 
@@ -37,10 +35,10 @@ public class OAuth2FeignRequestInterceptor implements RequestInterceptor {
     private static final String BEARER_TOKEN_TYPE = "Bearer";
 
     @Inject
-    private OAuth2ProtectedResourceDetails oAuth2ProtectedResourceDetails;
+    private OAuth2AccessTokenHolder oAuth2AccessTokenHolder;
 
     @Override
     public void apply(RequestTemplate template) {
-        template.header(AUTHORIZATION_HEADER, String.format("%s %s", BEARER_TOKEN_TYPE, new OAuth2RestTemplate(oAuth2ProtectedResourceDetails).getAccessToken().getValue()));
+        template.header(AUTHORIZATION_HEADER, String.format("%s %s", BEARER_TOKEN_TYPE, oAuth2AccessTokenHolder.getAccessToken().getValue()));
     }
 }
@@ -24,9 +24,17 @@
 package com.ixortalk.authserver.repository;
 
 import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.security.UserCredentials;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,12 +51,37 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findOneByEmail(String email);
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<User> findOneByLogin(String login);
 
+    @EntityGraph(attributePaths = "authorities")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    Optional<User> findOneWithAuthoritiesByLogin(String login);
+
+    @EntityGraph(attributePaths = "authorities")
+    Optional<User> findOneWithAuthoritiesById(Long id);
+
+    @Query("select new com.ixortalk.authserver.security.UserCredentials(u.login, u.password, u.activated, a.name) " +
+        "from User u left join u.authorities a where u.login = :login")
+    List<UserCredentials> findCredentialsByLogin(@Param("login") String login);
+
     Optional<User> findOneByProfilePictureKey(String profilePictureKey);
 
     Optional<User> findOneById(Long userId);
 
+    List<User> findAllByLoginIn(Collection<String> logins);
+
+    List<User> findAllByEmailIn(Collection<String> emails);
+
+    /**
+     * Keyset pagination: the cost of a page doesn't depend on how many pages came before it.
+     */
+    @Query("select u.id from User u where u.id > :afterId order by u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select distinct u from User u left join fetch u.authorities where u.id in :ids order by u.id")
+    List<User> findAllWithAuthoritiesByIdIn(@Param("ids") Collection<Long> ids);
+
     @Override
     void delete(User t);
 
@@ -0,0 +1,146 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.provider.ClientAlreadyExistsException;
+import org.springframework.security.oauth2.provider.ClientDetails;
+import org.springframework.security.oauth2.provider.ClientDetailsService;
+import org.springframework.security.oauth2.provider.ClientRegistrationException;
+import org.springframework.security.oauth2.provider.ClientRegistrationService;
+import org.springframework.security.oauth2.provider.NoSuchClientException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * {@link ClientDetailsService} keeping the clients loaded by the delegate in memory, every authenticated request looks
+ * up its client so this saves a query per request.
+ * <p>
+ * Each change made through this service increments the single row of <code>oauth_client_details_version</code>. Nodes
+ * compare that version with the one they last saw, at most once per check interval, and drop their whole cache when
+ * it moved. Changes made directly in the database are only picked up once the entries expire.
+ * </p>
+ */
+public class CachingClientDetailsService implements ClientDetailsService, ClientRegistrationService {
+
+    static final String SELECT_VERSION = "select version from oauth_client_details_version";
+
+    static final String INCREMENT_VERSION = "update oauth_client_details_version set version = version + 1";
+
+    private final ClientDetailsService delegate;
+
+    private final ClientRegistrationService registrationDelegate;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Cache<String, ClientDetails> clients;
+
+    private final long versionCheckIntervalNanos;
+
+    private final AtomicLong lastVersionCheck = new AtomicLong();
+
+    private volatile Long knownVersion;
+
+    /**
+     * @param clientCache when disabled, every call goes to the delegate
+     */
+    public <T extends ClientDetailsService & ClientRegistrationService> CachingClientDetailsService(T delegate, JdbcTemplate jdbcTemplate, IxorTalkProperties.ClientCache clientCache) {
+        this.delegate = delegate;
+        this.registrationDelegate = delegate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clients = clientCache.isEnabled() ?
+            Caffeine.newBuilder()
+                .maximumSize(clientCache.getMaximumSize())
+                .expireAfterWrite(clientCache.getTimeToLiveSeconds(), SECONDS)
+                .build() :
+            null;
+        this.versionCheckIntervalNanos = MILLISECONDS.toNanos(clientCache.getVersionCheckIntervalMillis());
+        this.lastVersionCheck.set(System.nanoTime() - versionCheckIntervalNanos);
+    }
+
+    @Override
+    public ClientDetails loadClientByClientId(String clientId) throws ClientRegistrationException {
+        if (clients == null) {
+            return delegate.loadClientByClientId(clientId);
+        }
+        checkVersion();
+        return clients.get(clientId, delegate::loadClientByClientId);
+    }
+
+    @Override
+    public void addClientDetails(ClientDetails clientDetails) throws ClientAlreadyExistsException {
+        registrationDelegate.addClientDetails(clientDetails);
+        changed(clientDetails.getClientId());
+    }
+
+    @Override
+    public void updateClientDetails(ClientDetails clientDetails) throws NoSuchClientException {
+        registrationDelegate.updateClientDetails(clientDetails);
+        changed(clientDetails.getClientId());
+    }
+
+    @Override
+    public void updateClientSecret(String clientId, String secret) throws NoSuchClientException {
+        registrationDelegate.updateClientSecret(clientId, secret);
+        changed(clientId);
+    }
+
+    @Override
+    public void removeClientDetails(String clientId) throws NoSuchClientException {
+        registrationDelegate.removeClientDetails(clientId);
+        changed(clientId);
+    }
+
+    @Override
+    public List<ClientDetails> listClientDetails() {
+        return registrationDelegate.listClientDetails();
+    }
+
+    private void changed(String clientId) {
+        jdbcTemplate.update(INCREMENT_VERSION);
+        if (clients != null) {
+            clients.invalidate(clientId);
+        }
+    }
+
+    private void checkVersion() {
+        long now = System.nanoTime();
+        long lastCheck = lastVersionCheck.get();
+        if (now - lastCheck < versionCheckIntervalNanos || !lastVersionCheck.compareAndSet(lastCheck, now)) {
+            return;
+        }
+        Long version = jdbcTemplate.queryForObject(SELECT_VERSION, Long.class);
+        if (knownVersion != null && !knownVersion.equals(version)) {
+            clients.invalidateAll();
+        }
+        knownVersion = version;
+    }
+}
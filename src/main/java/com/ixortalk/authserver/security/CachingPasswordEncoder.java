@@ -0,0 +1,119 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * {@link PasswordEncoder} remembering, for a short while, which raw password last matched a stored hash, so repeated
+ * logins of the same account skip the expensive verification of the delegate.
+ * <p>
+ * Only an HMAC of the raw password, keyed with a random per process secret, is kept in memory. Entries are keyed by
+ * the stored hash itself, so a changed password never matches a remembered one.
+ * </p>
+ */
+public class CachingPasswordEncoder implements PasswordEncoder {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final PasswordEncoder delegate;
+
+    private final Cache<String, byte[]> verifiedPasswords;
+
+    private final SecretKeySpec secret;
+
+    /**
+     * @param credentialCache when disabled, every call goes to the delegate
+     */
+    public CachingPasswordEncoder(PasswordEncoder delegate, IxorTalkProperties.CredentialCache credentialCache) {
+        this.delegate = delegate;
+        this.verifiedPasswords = credentialCache.isEnabled() ?
+            Caffeine.newBuilder()
+                .maximumSize(credentialCache.getMaximumSize())
+                .expireAfterWrite(credentialCache.getTimeToLiveSeconds(), SECONDS)
+                .build() :
+            null;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.secret = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (verifiedPasswords == null || rawPassword == null || encodedPassword == null) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+        byte[] digest = digest(rawPassword, encodedPassword);
+        byte[] verified = verifiedPasswords.getIfPresent(encodedPassword);
+        if (verified != null && MessageDigest.isEqual(verified, digest)) {
+            return true;
+        }
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        if (matches) {
+            verifiedPasswords.put(encodedPassword, digest);
+        }
+        return matches;
+    }
+
+    /**
+     * Forgets the password verified against the given stored hash, to be called when it is replaced or removed.
+     *
+     * @param encodedPassword the stored hash, may be {@code null}
+     */
+    public void evict(String encodedPassword) {
+        if (verifiedPasswords != null && encodedPassword != null) {
+            verifiedPasswords.invalidate(encodedPassword);
+        }
+    }
+
+    private byte[] digest(CharSequence rawPassword, String encodedPassword) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            mac.update(encodedPassword.getBytes(UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(rawPassword.toString().getBytes(UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot compute password digest", e);
+        }
+    }
+}
@@ -22,7 +22,7 @@
  * SOFTWARE.
  */
 package com.ixortalk.authserver.security;
-import com.ixortalk.authserver.domain.User;
+import com.codahale.metrics.annotation.Timed;
 import com.ixortalk.authserver.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,23 +48,34 @@ public class UserDetailsService implements org.springframework.security.core.use
     @Inject
     private UserRepository userRepository;
 
+    /**
+     * Only selects the columns needed to authenticate, in a read-only transaction, so no user entity is loaded into
+     * or flushed from the persistence context.
+     * <p>
+     * Never cached: the caches are local to each node, a password change or deactivation on another node has to be
+     * picked up straight away.
+     */
     @Override
-    @Transactional
+    @Timed
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(final String login) {
         log.debug("Authenticating {}", login);
         String lowercaseLogin = login.toLowerCase(Locale.ENGLISH);
-        Optional<User> userFromDatabase = userRepository.findOneByLogin(lowercaseLogin);
-        return userFromDatabase.map(user -> {
-            if (!user.getActivated()) {
-                throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
-            }
-            List<GrantedAuthority> grantedAuthorities = user.getAuthorities().stream()
-                    .map(authority -> new SimpleGrantedAuthority(authority.getName()))
-                .collect(Collectors.toList());
-            return new org.springframework.security.core.userdetails.User(lowercaseLogin,
-                user.getPassword(),
-                grantedAuthorities);
-        }).orElseThrow(() -> new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the " +
-        "database"));
+        List<UserCredentials> credentials = userRepository.findCredentialsByLogin(lowercaseLogin);
+        if (credentials.isEmpty()) {
+            throw new UsernameNotFoundException("User " + lowercaseLogin + " was not found in the database");
+        }
+        UserCredentials user = credentials.get(0);
+        if (!user.isActivated()) {
+            throw new UserNotActivatedException("User " + lowercaseLogin + " was not activated");
+        }
+        List<GrantedAuthority> grantedAuthorities = credentials.stream()
+            .map(UserCredentials::getAuthority)
+            .filter(Objects::nonNull)
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList());
+        return new org.springframework.security.core.userdetails.User(lowercaseLogin,
+            user.getPassword(),
+            grantedAuthorities);
     }
 }
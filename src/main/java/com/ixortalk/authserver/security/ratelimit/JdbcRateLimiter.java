@@ -0,0 +1,117 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.ratelimit;
+
+import java.util.List;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Keeps the token buckets in the rate_limit_bucket table, so all nodes share the same limits.
+ * <p>
+ * Every attempt locks the row of its bucket for the duration of a short transaction. Rows of buckets that haven't
+ * been used for a while are full again anyway, so they are removed regularly.
+ * </p>
+ */
+public class JdbcRateLimiter implements RateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcRateLimiter.class);
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final String SELECT_FOR_UPDATE = "select tokens, last_refill from rate_limit_bucket where bucket_key = ? for update";
+
+    private static final String INSERT = "insert into rate_limit_bucket (bucket_key, tokens, last_refill) values (?, ?, ?)";
+
+    private static final String UPDATE = "update rate_limit_bucket set tokens = ?, last_refill = ? where bucket_key = ?";
+
+    private static final String REFUND = "update rate_limit_bucket set tokens = least(tokens + 1, ?) where bucket_key = ?";
+
+    private static final String DELETE_IDLE = "delete from rate_limit_bucket where last_refill < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final IxorTalkProperties.RateLimit rateLimit;
+
+    public JdbcRateLimiter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, IxorTalkProperties.RateLimit rateLimit) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rateLimit = rateLimit;
+    }
+
+    @Override
+    public long tryConsume(String key, IxorTalkProperties.Bucket limit) {
+        String bucketKey = bucketKey(key);
+        try {
+            return transactionTemplate.execute(status -> tryConsumeInTransaction(bucketKey, limit));
+        } catch (DuplicateKeyException e) {
+            // another node created the bucket in the meantime, it is locked and updated like any other now
+            return transactionTemplate.execute(status -> tryConsumeInTransaction(bucketKey, limit));
+        }
+    }
+
+    @Override
+    public void refund(String key, IxorTalkProperties.Bucket limit) {
+        jdbcTemplate.update(REFUND, limit.getCapacity(), bucketKey(key));
+    }
+
+    private static String bucketKey(String key) {
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    private long tryConsumeInTransaction(String bucketKey, IxorTalkProperties.Bucket limit) {
+        long now = MILLISECONDS.toNanos(System.currentTimeMillis());
+        List<TokenBucket> buckets = jdbcTemplate.query(SELECT_FOR_UPDATE,
+            (resultSet, rowNum) -> new TokenBucket(resultSet.getDouble(1), MILLISECONDS.toNanos(resultSet.getLong(2))),
+            bucketKey);
+        TokenBucket bucket = buckets.isEmpty() ? new TokenBucket(limit.getCapacity(), now) : buckets.get(0);
+        long retryAfterSeconds = bucket.tryConsume(limit, now);
+        long lastRefill = NANOSECONDS.toMillis(bucket.getLastRefillNanos());
+        if (buckets.isEmpty()) {
+            jdbcTemplate.update(INSERT, bucketKey, bucket.getTokens(), lastRefill);
+        } else {
+            jdbcTemplate.update(UPDATE, bucket.getTokens(), lastRefill, bucketKey);
+        }
+        return retryAfterSeconds;
+    }
+
+    @Scheduled(cron = "${ixortalk.security.rate-limit.cleanup-cron:0 */5 * * * ?}")
+    public void removeIdleBuckets() {
+        int count = jdbcTemplate.update(DELETE_IDLE, System.currentTimeMillis() - SECONDS.toMillis(rateLimit.getIdleSeconds()));
+        log.debug("Deleted {} idle rate limit buckets", count);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.ratelimit;
+
+import java.util.concurrent.locks.Lock;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.util.concurrent.Striped;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Keeps the token buckets in memory, so every node limits on its own.
+ * <p>
+ * Buckets are guarded by a fixed number of lock stripes instead of a lock per key: concurrent attempts on different
+ * keys rarely contend, and the number of locks doesn't grow with the number of keys an attacker can make up. Buckets
+ * that haven't been used for a while are full again anyway, so they are evicted.
+ * </p>
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+    private final Cache<String, TokenBucket> buckets;
+
+    private final Striped<Lock> locks;
+
+    private final Ticker ticker;
+
+    public LocalRateLimiter(IxorTalkProperties.RateLimit rateLimit, Ticker ticker) {
+        this.buckets = Caffeine.newBuilder()
+            .expireAfterAccess(rateLimit.getIdleSeconds(), SECONDS)
+            .maximumSize(rateLimit.getMaximumSize())
+            .ticker(ticker)
+            .build();
+        this.locks = Striped.lock(rateLimit.getStripes());
+        this.ticker = ticker;
+    }
+
+    @Override
+    public long tryConsume(String key, IxorTalkProperties.Bucket limit) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            long now = ticker.read();
+            return buckets.get(key, k -> new TokenBucket(limit.getCapacity(), now)).tryConsume(limit, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void refund(String key, IxorTalkProperties.Bucket limit) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            TokenBucket bucket = buckets.getIfPresent(key);
+            if (bucket != null) {
+                bucket.refund(limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
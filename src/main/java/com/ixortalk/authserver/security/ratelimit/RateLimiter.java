@@ -0,0 +1,49 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.ratelimit;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+
+/**
+ * Hands out tokens from a token bucket per key.
+ */
+public interface RateLimiter {
+
+    /**
+     * Takes a token from the bucket of the given key, creating a full bucket if there is none yet.
+     *
+     * @param key the key of the bucket
+     * @param limit the capacity and refill rate of the bucket
+     * @return 0 when a token was taken, otherwise the number of seconds until the next token is available
+     */
+    long tryConsume(String key, IxorTalkProperties.Bucket limit);
+
+    /**
+     * Puts back a token taken by {@link #tryConsume}, never beyond the capacity of the bucket.
+     *
+     * @param key the key of the bucket
+     * @param limit the capacity and refill rate of the bucket
+     */
+    void refund(String key, IxorTalkProperties.Bucket limit);
+}
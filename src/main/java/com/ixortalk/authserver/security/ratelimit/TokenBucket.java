@@ -0,0 +1,72 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.ratelimit;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The state of a single token bucket. Not thread safe, callers guard it.
+ */
+class TokenBucket {
+
+    private double tokens;
+
+    private long lastRefillNanos;
+
+    TokenBucket(double tokens, long lastRefillNanos) {
+        this.tokens = tokens;
+        this.lastRefillNanos = lastRefillNanos;
+    }
+
+    /**
+     * @return 0 when a token was taken, otherwise the number of seconds until the next token is available
+     */
+    long tryConsume(IxorTalkProperties.Bucket limit, long nowNanos) {
+        if (nowNanos > lastRefillNanos) {
+            tokens = min(limit.getCapacity(), tokens + (nowNanos - lastRefillNanos) * limit.getRefillPerSecond() / SECONDS.toNanos(1));
+            lastRefillNanos = nowNanos;
+        }
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) ceil((1 - tokens) / limit.getRefillPerSecond());
+    }
+
+    void refund(IxorTalkProperties.Bucket limit) {
+        tokens = min(limit.getCapacity(), tokens + 1);
+    }
+
+    double getTokens() {
+        return tokens;
+    }
+
+    long getLastRefillNanos() {
+        return lastRefillNanos;
+    }
+}
@@ -0,0 +1,394 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AuthenticationKeyGenerator;
+import org.springframework.security.oauth2.provider.token.DefaultAuthenticationKeyGenerator;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static java.util.Collections.emptySet;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.springframework.transaction.TransactionDefinition.PROPAGATION_REQUIRES_NEW;
+
+/**
+ * {@link TokenStore} keeping recently used tokens in a bounded in-process cache in front of a persistent store.
+ * <p>
+ * When write-behind is enabled, stores and removals are queued and flushed in batches, one transaction per batch.
+ * A cache miss always flushes the queue first, so a reader never sees the persistent store lag behind this node.
+ * </p>
+ * <p>
+ * Cached tokens are also indexed by the user they belong to, and tokens cached by authentication key by their value,
+ * so removing a token or the tokens of a user never scans a cache. The indexes follow the removals from their caches,
+ * whatever the cause, through removal listeners.
+ * </p>
+ */
+public class CachingTokenStore implements TokenStore, DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(CachingTokenStore.class);
+
+    private final TokenStore delegate;
+
+    private final AuthenticationKeyGenerator authenticationKeyGenerator = new DefaultAuthenticationKeyGenerator();
+
+    private final Cache<String, OAuth2AccessToken> accessTokens;
+
+    private final Cache<String, OAuth2Authentication> authentications;
+
+    private final Cache<String, OAuth2AccessToken> accessTokensByAuthenticationKey;
+
+    private final ConcurrentMap<String, String> authenticationKeysByAccessToken = new ConcurrentHashMap<>();
+
+    private final TokensByUserName accessTokensByUserName = new TokensByUserName();
+
+    private final TokensByUserName refreshTokensByUserName = new TokensByUserName();
+
+    private final Cache<String, OAuth2RefreshToken> refreshTokens;
+
+    private final Cache<String, OAuth2Authentication> refreshTokenAuthentications;
+
+    private final boolean writeBehind;
+
+    private final BlockingQueue<Consumer<TokenStore>> pendingWrites;
+
+    private final int batchSize;
+
+    private final Object flushLock = new Object();
+
+    private TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService flusher;
+
+    public CachingTokenStore(TokenStore delegate, PlatformTransactionManager transactionManager, IxorTalkProperties.TokenStoreConfig tokenStoreConfig) {
+        this.delegate = delegate;
+
+        IxorTalkProperties.TokenCache cacheConfig = tokenStoreConfig.getCache();
+        this.accessTokens = newCache(cacheConfig);
+        this.authentications = newCache(cacheConfig, (tokenValue, authentication, cause) -> accessTokensByUserName.remove(tokenValue, authentication));
+        this.accessTokensByAuthenticationKey = newCache(cacheConfig, (authenticationKey, accessToken, cause) -> authenticationKeysByAccessToken.remove(accessToken.getValue(), authenticationKey));
+        this.refreshTokens = newCache(cacheConfig);
+        this.refreshTokenAuthentications = newCache(cacheConfig, (tokenValue, authentication, cause) -> refreshTokensByUserName.remove(tokenValue, authentication));
+
+        IxorTalkProperties.WriteBehind writeBehindConfig = tokenStoreConfig.getWriteBehind();
+        this.writeBehind = writeBehindConfig.isEnabled();
+        this.pendingWrites = new LinkedBlockingQueue<>(writeBehindConfig.getQueueCapacity());
+        this.batchSize = writeBehindConfig.getBatchSize();
+        if (writeBehind) {
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+            this.transactionTemplate.setPropagationBehavior(PROPAGATION_REQUIRES_NEW);
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "token-store-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(this::flushPendingWrites, writeBehindConfig.getFlushIntervalMillis(), writeBehindConfig.getFlushIntervalMillis(), MILLISECONDS);
+        }
+    }
+
+    private static <V> Cache<String, V> newCache(IxorTalkProperties.TokenCache cacheConfig) {
+        return Caffeine.newBuilder()
+            .maximumSize(cacheConfig.getMaximumSize())
+            .expireAfterWrite(cacheConfig.getTimeToLiveSeconds(), SECONDS)
+            .build();
+    }
+
+    /**
+     * The listener runs on the removing thread, so an index never lags behind its cache.
+     */
+    private static <V> Cache<String, V> newCache(IxorTalkProperties.TokenCache cacheConfig, RemovalListener<String, V> removalListener) {
+        return Caffeine.newBuilder()
+            .maximumSize(cacheConfig.getMaximumSize())
+            .expireAfterWrite(cacheConfig.getTimeToLiveSeconds(), SECONDS)
+            .executor(Runnable::run)
+            .removalListener(removalListener)
+            .build();
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(OAuth2AccessToken token) {
+        return readAuthentication(token.getValue());
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(String token) {
+        return read(authentications, token, delegate::readAuthentication, accessTokensByUserName::add);
+    }
+
+    @Override
+    public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        accessTokens.put(token.getValue(), token);
+        authentications.put(token.getValue(), authentication);
+        accessTokensByUserName.add(token.getValue(), authentication);
+        cacheByAuthenticationKey(authenticationKeyGenerator.extractKey(authentication), token);
+        write(tokenStore -> tokenStore.storeAccessToken(token, authentication));
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue) {
+        return read(accessTokens, tokenValue, delegate::readAccessToken);
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token) {
+        evictAccessToken(token.getValue());
+        write(tokenStore -> tokenStore.removeAccessToken(token));
+    }
+
+    @Override
+    public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+        refreshTokens.put(refreshToken.getValue(), refreshToken);
+        refreshTokenAuthentications.put(refreshToken.getValue(), authentication);
+        refreshTokensByUserName.add(refreshToken.getValue(), authentication);
+        write(tokenStore -> tokenStore.storeRefreshToken(refreshToken, authentication));
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue) {
+        return read(refreshTokens, tokenValue, delegate::readRefreshToken);
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token) {
+        return read(refreshTokenAuthentications, token.getValue(), tokenValue -> delegate.readAuthenticationForRefreshToken(token), refreshTokensByUserName::add);
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token) {
+        refreshTokens.invalidate(token.getValue());
+        refreshTokenAuthentications.invalidate(token.getValue());
+        write(tokenStore -> tokenStore.removeRefreshToken(token));
+    }
+
+    @Override
+    public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken) {
+        accessTokens.asMap().values().stream()
+            .filter(accessToken -> accessToken.getRefreshToken() != null && refreshToken.getValue().equals(accessToken.getRefreshToken().getValue()))
+            .map(OAuth2AccessToken::getValue)
+            .collect(toList())
+            .forEach(this::evictAccessToken);
+        write(tokenStore -> tokenStore.removeAccessTokenUsingRefreshToken(refreshToken));
+    }
+
+    @Override
+    public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication) {
+        String authenticationKey = authenticationKeyGenerator.extractKey(authentication);
+        OAuth2AccessToken cached = accessTokensByAuthenticationKey.getIfPresent(authenticationKey);
+        if (cached != null) {
+            return cached;
+        }
+        flushPendingWrites();
+        OAuth2AccessToken accessToken = delegate.getAccessToken(authentication);
+        if (accessToken != null) {
+            // the delegate may have re-stored the token with this authentication
+            authentications.invalidate(accessToken.getValue());
+            cacheByAuthenticationKey(authenticationKey, accessToken);
+        }
+        return accessToken;
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(String clientId, String userName) {
+        flushPendingWrites();
+        return delegate.findTokensByClientIdAndUserName(clientId, userName);
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientId(String clientId) {
+        flushPendingWrites();
+        return delegate.findTokensByClientId(clientId);
+    }
+
+    /**
+     * Writes all queued operations to the persistent store and drops every cached token of the given user.
+     * To be called before the user's tokens are deleted behind this store's back.
+     *
+     * @param userName the login of the user
+     */
+    public void evictTokensOfUser(String userName) {
+        flushPendingWrites();
+        accessTokensByUserName.get(userName).forEach(this::evictAccessToken);
+        refreshTokensByUserName.get(userName).forEach(refreshToken -> {
+                refreshTokens.invalidate(refreshToken);
+                refreshTokenAuthentications.invalidate(refreshToken);
+            });
+    }
+
+    public void flushPendingWrites() {
+        if (!writeBehind) {
+            return;
+        }
+        synchronized (flushLock) {
+            List<Consumer<TokenStore>> batch = new ArrayList<>(batchSize);
+            while (pendingWrites.drainTo(batch, batchSize) > 0) {
+                applyBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (writeBehind) {
+            log.info("Flushing pending token store writes");
+            flusher.shutdown();
+            flushPendingWrites();
+        }
+    }
+
+    private <V> V read(Cache<String, V> cache, String key, Function<String, V> loader) {
+        return read(cache, key, loader, (loadedKey, loadedValue) -> {
+        });
+    }
+
+    private <V> V read(Cache<String, V> cache, String key, Function<String, V> loader, BiConsumer<String, V> onLoad) {
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        flushPendingWrites();
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            cache.put(key, loaded);
+            onLoad.accept(key, loaded);
+        }
+        return loaded;
+    }
+
+    private void evictAccessToken(String tokenValue) {
+        accessTokens.invalidate(tokenValue);
+        authentications.invalidate(tokenValue);
+        String authenticationKey = authenticationKeysByAccessToken.get(tokenValue);
+        if (authenticationKey != null) {
+            accessTokensByAuthenticationKey.asMap().computeIfPresent(authenticationKey, (key, accessToken) -> tokenValue.equals(accessToken.getValue()) ? null : accessToken);
+        }
+    }
+
+    /**
+     * A token replaced under the same authentication key leaves the reverse index through the removal listener.
+     */
+    private void cacheByAuthenticationKey(String authenticationKey, OAuth2AccessToken accessToken) {
+        accessTokensByAuthenticationKey.put(authenticationKey, accessToken);
+        authenticationKeysByAccessToken.put(accessToken.getValue(), authenticationKey);
+    }
+
+    private void write(Consumer<TokenStore> operation) {
+        if (!writeBehind) {
+            operation.accept(delegate);
+            return;
+        }
+        if (!pendingWrites.offer(operation)) {
+            log.warn("Token store write-behind queue is full, flushing on the calling thread");
+            flushPendingWrites();
+            operation.accept(delegate);
+        }
+    }
+
+    private void applyBatch(List<Consumer<TokenStore>> batch) {
+        try {
+            transactionTemplate.execute(status -> {
+                batch.forEach(operation -> operation.accept(delegate));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to write a batch of {} token store operations, retrying them one by one", batch.size(), e);
+            batch.forEach(this::applyQuietly);
+        }
+    }
+
+    private void applyQuietly(Consumer<TokenStore> operation) {
+        try {
+            transactionTemplate.execute(status -> {
+                operation.accept(delegate);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("Dropping token store operation: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Token values per user name. The sets are copied on write, so a set handed out is never modified.
+     */
+    private static class TokensByUserName {
+
+        private final ConcurrentMap<String, Set<String>> tokenValues = new ConcurrentHashMap<>();
+
+        void add(String tokenValue, OAuth2Authentication authentication) {
+            if (authentication.isClientOnly()) {
+                return;
+            }
+            tokenValues.compute(authentication.getName(), (userName, values) -> {
+                Set<String> added = values == null ? new HashSet<>() : new HashSet<>(values);
+                added.add(tokenValue);
+                return added;
+            });
+        }
+
+        void remove(String tokenValue, OAuth2Authentication authentication) {
+            if (authentication.isClientOnly()) {
+                return;
+            }
+            tokenValues.computeIfPresent(authentication.getName(), (userName, values) -> {
+                if (!values.contains(tokenValue)) {
+                    return values;
+                }
+                Set<String> removed = new HashSet<>(values);
+                removed.remove(tokenValue);
+                return removed.isEmpty() ? null : removed;
+            });
+        }
+
+        Set<String> get(String userName) {
+            return tokenValues.getOrDefault(userName, emptySet());
+        }
+    }
+}
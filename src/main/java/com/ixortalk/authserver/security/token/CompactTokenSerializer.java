@@ -0,0 +1,459 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.oauth2.common.DefaultExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.ExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.common.util.SerializationUtils;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Versioned binary format for tokens and their authentication, several times smaller and faster than Java
+ * serialization.
+ * <p>
+ * Every value starts with a magic byte and a format version. Values that don't start with it are treated as legacy
+ * Java-serialized rows, so existing tokens stay readable. Parts of an authentication this format has no dedicated
+ * encoding for, e.g. custom principals or request details, are embedded Java-serialized.
+ * </p>
+ */
+public class CompactTokenSerializer implements TokenSerializer {
+
+    static final byte MAGIC = 0x1F;
+
+    static final byte VERSION = 1;
+
+    private static final byte REFRESH_TOKEN_NONE = 0;
+    private static final byte REFRESH_TOKEN = 1;
+    private static final byte REFRESH_TOKEN_EXPIRING = 2;
+
+    private static final byte USER_AUTHENTICATION_NONE = 0;
+    private static final byte USER_AUTHENTICATION_USER = 1;
+    private static final byte USER_AUTHENTICATION_NAME = 2;
+    private static final byte USER_AUTHENTICATION_SERIALIZED = 3;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_LONG = 2;
+    private static final byte VALUE_INTEGER = 3;
+    private static final byte VALUE_BOOLEAN = 4;
+    private static final byte VALUE_STRING_MAP = 5;
+    private static final byte VALUE_SERIALIZED = 6;
+
+    @Override
+    public byte[] serializeAccessToken(OAuth2AccessToken token) {
+        return write(out -> {
+            writeString(out, token.getValue());
+            writeDate(out, token.getExpiration());
+            writeString(out, token.getTokenType());
+            writeRefreshToken(out, token.getRefreshToken());
+            writeStrings(out, token.getScope());
+            writeValueMap(out, token.getAdditionalInformation());
+        });
+    }
+
+    @Override
+    public byte[] serializeRefreshToken(OAuth2RefreshToken token) {
+        return write(out -> writeRefreshToken(out, token));
+    }
+
+    @Override
+    public byte[] serializeAuthentication(OAuth2Authentication authentication) {
+        return write(out -> {
+            writeRequest(out, authentication.getOAuth2Request());
+            writeUserAuthentication(out, authentication.getUserAuthentication());
+        });
+    }
+
+    @Override
+    public OAuth2AccessToken deserializeAccessToken(byte[] token) {
+        if (isJavaSerialized(token)) {
+            return SerializationUtils.deserialize(token);
+        }
+        return read(token, in -> {
+            DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(readString(in));
+            accessToken.setExpiration(readDate(in));
+            accessToken.setTokenType(readString(in));
+            accessToken.setRefreshToken(readRefreshToken(in));
+            accessToken.setScope(readStrings(in));
+            accessToken.setAdditionalInformation(readValueMap(in));
+            return accessToken;
+        });
+    }
+
+    @Override
+    public OAuth2RefreshToken deserializeRefreshToken(byte[] token) {
+        if (isJavaSerialized(token)) {
+            return SerializationUtils.deserialize(token);
+        }
+        return read(token, this::readRefreshToken);
+    }
+
+    @Override
+    public OAuth2Authentication deserializeAuthentication(byte[] authentication) {
+        if (isJavaSerialized(authentication)) {
+            return SerializationUtils.deserialize(authentication);
+        }
+        return read(authentication, in -> new OAuth2Authentication(readRequest(in), readUserAuthentication(in)));
+    }
+
+    static boolean isCompactSerialized(byte[] bytes) {
+        return bytes.length >= 1 && bytes[0] == MAGIC;
+    }
+
+    private static boolean isJavaSerialized(byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED;
+    }
+
+    private void writeRefreshToken(DataOutputStream out, OAuth2RefreshToken refreshToken) throws IOException {
+        if (refreshToken == null) {
+            out.writeByte(REFRESH_TOKEN_NONE);
+        } else if (refreshToken instanceof ExpiringOAuth2RefreshToken) {
+            out.writeByte(REFRESH_TOKEN_EXPIRING);
+            writeString(out, refreshToken.getValue());
+            writeDate(out, ((ExpiringOAuth2RefreshToken) refreshToken).getExpiration());
+        } else {
+            out.writeByte(REFRESH_TOKEN);
+            writeString(out, refreshToken.getValue());
+        }
+    }
+
+    private OAuth2RefreshToken readRefreshToken(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case REFRESH_TOKEN_NONE:
+                return null;
+            case REFRESH_TOKEN:
+                return new DefaultOAuth2RefreshToken(readString(in));
+            case REFRESH_TOKEN_EXPIRING:
+                return new DefaultExpiringOAuth2RefreshToken(readString(in), readDate(in));
+            default:
+                throw new IllegalArgumentException("Unknown refresh token type " + type);
+        }
+    }
+
+    private void writeRequest(DataOutputStream out, OAuth2Request request) throws IOException {
+        writeString(out, request.getClientId());
+        writeStringMap(out, request.getRequestParameters());
+        writeAuthorities(out, request.getAuthorities());
+        out.writeBoolean(request.isApproved());
+        writeStrings(out, request.getScope());
+        writeStrings(out, request.getResourceIds());
+        writeString(out, request.getRedirectUri());
+        writeStrings(out, request.getResponseTypes());
+        writeValueMap(out, request.getExtensions());
+    }
+
+    private OAuth2Request readRequest(DataInputStream in) throws IOException {
+        String clientId = readString(in);
+        Map<String, String> requestParameters = readStringMap(in);
+        List<GrantedAuthority> authorities = readAuthorities(in);
+        boolean approved = in.readBoolean();
+        Set<String> scope = readStrings(in);
+        Set<String> resourceIds = readStrings(in);
+        String redirectUri = readString(in);
+        Set<String> responseTypes = readStrings(in);
+        Map<String, Serializable> extensions = new LinkedHashMap<>();
+        readValueMap(in).forEach((key, value) -> extensions.put(key, (Serializable) value));
+        return new OAuth2Request(requestParameters, clientId, authorities, approved, scope, resourceIds, redirectUri, responseTypes, extensions);
+    }
+
+    private void writeUserAuthentication(DataOutputStream out, Authentication userAuthentication) throws IOException {
+        if (userAuthentication == null) {
+            out.writeByte(USER_AUTHENTICATION_NONE);
+            return;
+        }
+        if (isCompactable(userAuthentication)) {
+            Object principal = userAuthentication.getPrincipal();
+            if (principal instanceof User) {
+                User user = (User) principal;
+                out.writeByte(USER_AUTHENTICATION_USER);
+                writeString(out, user.getUsername());
+                out.writeBoolean(user.isEnabled());
+                out.writeBoolean(user.isAccountNonExpired());
+                out.writeBoolean(user.isCredentialsNonExpired());
+                out.writeBoolean(user.isAccountNonLocked());
+                writeAuthorities(out, user.getAuthorities());
+            } else {
+                out.writeByte(USER_AUTHENTICATION_NAME);
+                writeString(out, (String) principal);
+            }
+            writeAuthorities(out, userAuthentication.getAuthorities());
+            writeValue(out, userAuthentication.getDetails());
+            return;
+        }
+        out.writeByte(USER_AUTHENTICATION_SERIALIZED);
+        writeBytes(out, SerializationUtils.serialize(userAuthentication));
+    }
+
+    private static boolean isCompactable(Authentication userAuthentication) {
+        return userAuthentication.getClass() == UsernamePasswordAuthenticationToken.class
+            && userAuthentication.isAuthenticated()
+            && userAuthentication.getCredentials() == null
+            && (userAuthentication.getPrincipal() instanceof String
+            || (userAuthentication.getPrincipal().getClass() == User.class && ((User) userAuthentication.getPrincipal()).getPassword() == null));
+    }
+
+    private Authentication readUserAuthentication(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        Object principal;
+        switch (type) {
+            case USER_AUTHENTICATION_NONE:
+                return null;
+            case USER_AUTHENTICATION_USER:
+                User user = new User(readString(in), "", in.readBoolean(), in.readBoolean(), in.readBoolean(), in.readBoolean(), readAuthorities(in));
+                user.eraseCredentials();
+                principal = user;
+                break;
+            case USER_AUTHENTICATION_NAME:
+                principal = readString(in);
+                break;
+            case USER_AUTHENTICATION_SERIALIZED:
+                return SerializationUtils.deserialize(readBytes(in));
+            default:
+                throw new IllegalArgumentException("Unknown user authentication type " + type);
+        }
+        UsernamePasswordAuthenticationToken userAuthentication = new UsernamePasswordAuthenticationToken(principal, null, readAuthorities(in));
+        userAuthentication.setDetails(readValue(in));
+        return userAuthentication;
+    }
+
+    private static void writeAuthorities(DataOutputStream out, Collection<? extends GrantedAuthority> authorities) throws IOException {
+        writeStrings(out, authorities.stream().map(GrantedAuthority::getAuthority).collect(toList()));
+    }
+
+    private static List<GrantedAuthority> readAuthorities(DataInputStream in) throws IOException {
+        return readStrings(in).stream().map(SimpleGrantedAuthority::new).collect(toList());
+    }
+
+    private static void writeValueMap(DataOutputStream out, Map<String, ?> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> readValueMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, Object> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readValue(in));
+        }
+        return map;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (isStringMap(value)) {
+            out.writeByte(VALUE_STRING_MAP);
+            @SuppressWarnings("unchecked")
+            Map<String, String> stringMap = (Map<String, String>) value;
+            writeStringMap(out, stringMap);
+        } else {
+            out.writeByte(VALUE_SERIALIZED);
+            writeBytes(out, SerializationUtils.serialize(value));
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return readString(in);
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_INTEGER:
+                return in.readInt();
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_STRING_MAP:
+                return readStringMap(in);
+            case VALUE_SERIALIZED:
+                return SerializationUtils.deserialize(readBytes(in));
+            default:
+                throw new IllegalArgumentException("Unknown value type " + type);
+        }
+    }
+
+    private static boolean isStringMap(Object value) {
+        return value instanceof Map
+            && ((Map<?, ?>) value).entrySet().stream().allMatch(entry -> entry.getKey() instanceof String && entry.getValue() instanceof String);
+    }
+
+    private static void writeStringMap(DataOutputStream out, Map<String, String> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readStringMap(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, String> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readString(in));
+        }
+        return map;
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+        if (strings == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    private static Set<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Set<String> strings = new LinkedHashSet<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    private static void writeDate(DataOutputStream out, Date date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.getTime());
+        }
+    }
+
+    private static Date readDate(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new Date(in.readLong()) : null;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        writeBytes(out, string.getBytes(UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] write(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize token", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T read(byte[] bytes, Reader<T> reader) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != MAGIC) {
+                throw new IllegalArgumentException("Not a compact serialized token");
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported compact token format version " + version);
+            }
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot deserialize token", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Deletes expired rows from the OAuth token and approval tables.
+ * <p>
+ * Rows are deleted in chunks, each chunk in its own short statement, with a pause in between so the job never holds
+ * locks for long and leaves room for concurrent token requests.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(name = "ixortalk.oauth.jwt.enabled", havingValue = "false", matchIfMissing = true)
+public class ExpiredTokenReaper {
+
+    private final Logger log = LoggerFactory.getLogger(ExpiredTokenReaper.class);
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private Counter deletedAccessTokens;
+
+    private Counter deletedRefreshTokens;
+
+    private Counter deletedApprovals;
+
+    private Timer duration;
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        deletedAccessTokens = metricRegistry.counter(name(ExpiredTokenReaper.class, "deleted", "access-tokens"));
+        deletedRefreshTokens = metricRegistry.counter(name(ExpiredTokenReaper.class, "deleted", "refresh-tokens"));
+        deletedApprovals = metricRegistry.counter(name(ExpiredTokenReaper.class, "deleted", "approvals"));
+        duration = metricRegistry.timer(name(ExpiredTokenReaper.class, "duration"));
+    }
+
+    /**
+     * Expired tokens and approvals should be removed regularly.
+     * <p>
+     * This is scheduled to get fired every 15 minutes by default.
+     * </p>
+     */
+    @Scheduled(cron = "${ixortalk.oauth.token-store.reaper.cron:0 */15 * * * ?}")
+    public void removeExpiredTokens() {
+        if (!ixorTalkProperties.getOauth().getTokenStore().getReaper().isEnabled()) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (Timer.Context ignored = duration.time()) {
+            long accessTokens = reap("oauth_access_token", now, deletedAccessTokens);
+            long refreshTokens = reap("oauth_refresh_token", now, deletedRefreshTokens);
+            long approvals = reapApprovals(now);
+            log.debug("Deleted {} expired access tokens, {} expired refresh tokens and {} expired approvals", accessTokens, refreshTokens, approvals);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long reap(String tableName, Timestamp now, Counter deleted) throws InterruptedException {
+        JdbcTemplate chunkQuery = chunkQuery();
+        long total = 0;
+        List<String> tokenIds;
+        do {
+            tokenIds = chunkQuery.queryForList("select token_id from " + tableName + " where expiration < ?", String.class, now);
+            if (!tokenIds.isEmpty()) {
+                int count = namedParameterJdbcTemplate.update(
+                    "delete from " + tableName + " where token_id in (:tokenIds) and expiration < :now",
+                    new MapSqlParameterSource("tokenIds", tokenIds).addValue("now", now));
+                deleted.inc(count);
+                total += count;
+                pause();
+            }
+        } while (tokenIds.size() == getChunkSize());
+        return total;
+    }
+
+    private long reapApprovals(Timestamp now) throws InterruptedException {
+        JdbcTemplate chunkQuery = chunkQuery();
+        long total = 0;
+        List<Object[]> approvals;
+        do {
+            approvals = chunkQuery.query(
+                "select userId, clientId, scope from oauth_approvals where expiresAt < ?",
+                (resultSet, rowNum) -> new Object[]{resultSet.getString(1), resultSet.getString(2), resultSet.getString(3), now},
+                now);
+            if (!approvals.isEmpty()) {
+                int count = 0;
+                for (int updateCount : jdbcTemplate.batchUpdate("delete from oauth_approvals where userId = ? and clientId = ? and scope = ? and expiresAt < ?", approvals)) {
+                    count += Math.max(updateCount, 0);
+                }
+                deletedApprovals.inc(count);
+                total += count;
+                pause();
+            }
+        } while (approvals.size() == getChunkSize());
+        return total;
+    }
+
+    private JdbcTemplate chunkQuery() {
+        JdbcTemplate chunkQuery = new JdbcTemplate(dataSource);
+        chunkQuery.setMaxRows(getChunkSize());
+        return chunkQuery;
+    }
+
+    private int getChunkSize() {
+        return ixorTalkProperties.getOauth().getTokenStore().getReaper().getChunkSize();
+    }
+
+    private void pause() throws InterruptedException {
+        long pauseMillis = ixorTalkProperties.getOauth().getTokenStore().getReaper().getPauseMillis();
+        if (pauseMillis > 0) {
+            Thread.sleep(pauseMillis);
+        }
+    }
+}
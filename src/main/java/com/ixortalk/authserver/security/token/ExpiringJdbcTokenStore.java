@@ -0,0 +1,154 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.support.SqlLobValue;
+import org.springframework.security.oauth2.common.ExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.AuthenticationKeyGenerator;
+import org.springframework.security.oauth2.provider.token.DefaultAuthenticationKeyGenerator;
+import org.springframework.security.oauth2.provider.token.store.JdbcTokenStore;
+
+import static java.sql.Types.BLOB;
+import static java.sql.Types.TIMESTAMP;
+import static java.sql.Types.VARCHAR;
+
+/**
+ * {@link JdbcTokenStore} that also stores each token's expiry in a plain column, so expired tokens can be found
+ * without deserializing them. Tokens that never expire keep a {@code null} expiration.
+ * <p>
+ * The expiration is written by the insert of the token itself, so the store replaces the insert statements of
+ * {@link JdbcTokenStore} with its own.
+ * </p>
+ * <p>
+ * Tokens are (de)serialized with the given {@link TokenSerializer}.
+ * </p>
+ */
+public class ExpiringJdbcTokenStore extends JdbcTokenStore {
+
+    private static final String INSERT_ACCESS_TOKEN_SQL = "insert into oauth_access_token (token_id, token, authentication_id, user_name, client_id, authentication, refresh_token, expiration) values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int[] INSERT_ACCESS_TOKEN_TYPES = {VARCHAR, BLOB, VARCHAR, VARCHAR, VARCHAR, BLOB, VARCHAR, TIMESTAMP};
+
+    private static final String INSERT_REFRESH_TOKEN_SQL = "insert into oauth_refresh_token (token_id, token, authentication, expiration) values (?, ?, ?, ?)";
+
+    private static final int[] INSERT_REFRESH_TOKEN_TYPES = {VARCHAR, BLOB, BLOB, TIMESTAMP};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TokenSerializer tokenSerializer;
+
+    private AuthenticationKeyGenerator authenticationKeyGenerator = new DefaultAuthenticationKeyGenerator();
+
+    public ExpiringJdbcTokenStore(DataSource dataSource, TokenSerializer tokenSerializer) {
+        super(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.tokenSerializer = tokenSerializer;
+    }
+
+    @Override
+    public void setAuthenticationKeyGenerator(AuthenticationKeyGenerator authenticationKeyGenerator) {
+        super.setAuthenticationKeyGenerator(authenticationKeyGenerator);
+        this.authenticationKeyGenerator = authenticationKeyGenerator;
+    }
+
+    /**
+     * Same as {@link JdbcTokenStore#storeAccessToken}, with the expiration in the insert.
+     */
+    @Override
+    public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        String refreshToken = token.getRefreshToken() == null ? null : token.getRefreshToken().getValue();
+        if (readAccessToken(token.getValue()) != null) {
+            removeAccessToken(token.getValue());
+        }
+        jdbcTemplate.update(INSERT_ACCESS_TOKEN_SQL,
+            new Object[]{
+                extractTokenKey(token.getValue()),
+                new SqlLobValue(serializeAccessToken(token)),
+                authenticationKeyGenerator.extractKey(authentication),
+                authentication.isClientOnly() ? null : authentication.getName(),
+                authentication.getOAuth2Request().getClientId(),
+                new SqlLobValue(serializeAuthentication(authentication)),
+                extractTokenKey(refreshToken),
+                toTimestamp(token.getExpiration())},
+            INSERT_ACCESS_TOKEN_TYPES);
+    }
+
+    /**
+     * Same as {@link JdbcTokenStore#storeRefreshToken}, with the expiration in the insert.
+     */
+    @Override
+    public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+        Date expiration = refreshToken instanceof ExpiringOAuth2RefreshToken ? ((ExpiringOAuth2RefreshToken) refreshToken).getExpiration() : null;
+        jdbcTemplate.update(INSERT_REFRESH_TOKEN_SQL,
+            new Object[]{
+                extractTokenKey(refreshToken.getValue()),
+                new SqlLobValue(serializeRefreshToken(refreshToken)),
+                new SqlLobValue(serializeAuthentication(authentication)),
+                toTimestamp(expiration)},
+            INSERT_REFRESH_TOKEN_TYPES);
+    }
+
+    @Override
+    protected byte[] serializeAccessToken(OAuth2AccessToken token) {
+        return tokenSerializer.serializeAccessToken(token);
+    }
+
+    @Override
+    protected byte[] serializeRefreshToken(OAuth2RefreshToken token) {
+        return tokenSerializer.serializeRefreshToken(token);
+    }
+
+    @Override
+    protected byte[] serializeAuthentication(OAuth2Authentication authentication) {
+        return tokenSerializer.serializeAuthentication(authentication);
+    }
+
+    @Override
+    protected OAuth2AccessToken deserializeAccessToken(byte[] token) {
+        return tokenSerializer.deserializeAccessToken(token);
+    }
+
+    @Override
+    protected OAuth2RefreshToken deserializeRefreshToken(byte[] token) {
+        return tokenSerializer.deserializeRefreshToken(token);
+    }
+
+    @Override
+    protected OAuth2Authentication deserializeAuthentication(byte[] authentication) {
+        return tokenSerializer.deserializeAuthentication(authentication);
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
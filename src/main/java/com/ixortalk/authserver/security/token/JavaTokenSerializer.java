@@ -0,0 +1,77 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.common.util.SerializationUtils;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+
+/**
+ * Plain Java serialization, the format {@link org.springframework.security.oauth2.provider.token.store.JdbcTokenStore}
+ * uses out of the box. Rows written by {@link CompactTokenSerializer} can still be read, so switching back is safe.
+ */
+public class JavaTokenSerializer implements TokenSerializer {
+
+    private final CompactTokenSerializer compactSerializer = new CompactTokenSerializer();
+
+    @Override
+    public byte[] serializeAccessToken(OAuth2AccessToken token) {
+        return SerializationUtils.serialize(token);
+    }
+
+    @Override
+    public byte[] serializeRefreshToken(OAuth2RefreshToken token) {
+        return SerializationUtils.serialize(token);
+    }
+
+    @Override
+    public byte[] serializeAuthentication(OAuth2Authentication authentication) {
+        return SerializationUtils.serialize(authentication);
+    }
+
+    @Override
+    public OAuth2AccessToken deserializeAccessToken(byte[] token) {
+        if (CompactTokenSerializer.isCompactSerialized(token)) {
+            return compactSerializer.deserializeAccessToken(token);
+        }
+        return SerializationUtils.deserialize(token);
+    }
+
+    @Override
+    public OAuth2RefreshToken deserializeRefreshToken(byte[] token) {
+        if (CompactTokenSerializer.isCompactSerialized(token)) {
+            return compactSerializer.deserializeRefreshToken(token);
+        }
+        return SerializationUtils.deserialize(token);
+    }
+
+    @Override
+    public OAuth2Authentication deserializeAuthentication(byte[] authentication) {
+        if (CompactTokenSerializer.isCompactSerialized(authentication)) {
+            return compactSerializer.deserializeAuthentication(authentication);
+        }
+        return SerializationUtils.deserialize(authentication);
+    }
+}
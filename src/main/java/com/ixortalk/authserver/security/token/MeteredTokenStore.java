@@ -0,0 +1,129 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * {@link TokenStore} timing every call to its delegate, one timer per operation.
+ */
+public class MeteredTokenStore implements TokenStore {
+
+    private final TokenStore delegate;
+
+    private final MetricRegistry metricRegistry;
+
+    public MeteredTokenStore(TokenStore delegate, MetricRegistry metricRegistry) {
+        this.delegate = delegate;
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(OAuth2AccessToken token) {
+        return time("readAuthentication", () -> delegate.readAuthentication(token));
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(String token) {
+        return time("readAuthentication", () -> delegate.readAuthentication(token));
+    }
+
+    @Override
+    public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+        time("storeAccessToken", () -> delegate.storeAccessToken(token, authentication));
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue) {
+        return time("readAccessToken", () -> delegate.readAccessToken(tokenValue));
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token) {
+        time("removeAccessToken", () -> delegate.removeAccessToken(token));
+    }
+
+    @Override
+    public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+        time("storeRefreshToken", () -> delegate.storeRefreshToken(refreshToken, authentication));
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue) {
+        return time("readRefreshToken", () -> delegate.readRefreshToken(tokenValue));
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token) {
+        return time("readAuthenticationForRefreshToken", () -> delegate.readAuthenticationForRefreshToken(token));
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token) {
+        time("removeRefreshToken", () -> delegate.removeRefreshToken(token));
+    }
+
+    @Override
+    public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken) {
+        time("removeAccessTokenUsingRefreshToken", () -> delegate.removeAccessTokenUsingRefreshToken(refreshToken));
+    }
+
+    @Override
+    public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication) {
+        return time("getAccessToken", () -> delegate.getAccessToken(authentication));
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(String clientId, String userName) {
+        return time("findTokensByClientIdAndUserName", () -> delegate.findTokensByClientIdAndUserName(clientId, userName));
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientId(String clientId) {
+        return time("findTokensByClientId", () -> delegate.findTokensByClientId(clientId));
+    }
+
+    private <T> T time(String operation, Supplier<T> call) {
+        try (Timer.Context ignored = metricRegistry.timer(name(MeteredTokenStore.class, operation)).time()) {
+            return call.get();
+        }
+    }
+
+    private void time(String operation, Runnable call) {
+        time(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.security.jwt.Jwt;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.security.jwt.crypto.sign.RsaSigner;
+import org.springframework.security.jwt.crypto.sign.RsaVerifier;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.common.util.JsonParser;
+import org.springframework.security.oauth2.common.util.JsonParserFactory;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.store.JwtAccessTokenConverter;
+
+import static java.util.Collections.singletonMap;
+import static org.springframework.security.oauth2.provider.token.AccessTokenConverter.EXP;
+
+/**
+ * {@link JwtAccessTokenConverter} signing with the active RSA key and verifying with whichever published key the
+ * token's {@code kid} header refers to, so keys can be rotated without invalidating tokens that are still in flight.
+ */
+public class RotatingJwtAccessTokenConverter extends JwtAccessTokenConverter {
+
+    public static final String KEY_ID_HEADER = "kid";
+
+    private final JsonParser jsonParser = JsonParserFactory.create();
+
+    private final String activeKeyId;
+
+    private final Map<String, KeyPair> keyPairs;
+
+    private final Map<String, RsaVerifier> verifiers = new LinkedHashMap<>();
+
+    private final RsaSigner signer;
+
+    /**
+     * @param keyPairs    all published key pairs by key id, including the active one
+     * @param activeKeyId the id of the key pair used to sign new tokens
+     */
+    public RotatingJwtAccessTokenConverter(Map<String, KeyPair> keyPairs, String activeKeyId) {
+        if (!keyPairs.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("Active JWT signing key '" + activeKeyId + "' is not one of " + keyPairs.keySet());
+        }
+        this.activeKeyId = activeKeyId;
+        this.keyPairs = Collections.unmodifiableMap(new LinkedHashMap<>(keyPairs));
+        this.keyPairs.forEach((keyId, keyPair) -> verifiers.put(keyId, new RsaVerifier((RSAPublicKey) keyPair.getPublic())));
+        this.signer = new RsaSigner((RSAPrivateKey) keyPairs.get(activeKeyId).getPrivate());
+        setKeyPair(keyPairs.get(activeKeyId));
+    }
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public Map<String, KeyPair> getKeyPairs() {
+        return keyPairs;
+    }
+
+    @Override
+    protected String encode(OAuth2AccessToken accessToken, OAuth2Authentication authentication) {
+        String content;
+        try {
+            content = jsonParser.formatMap(getAccessTokenConverter().convertAccessToken(accessToken, authentication));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot convert access token to JSON", e);
+        }
+        return JwtHelper.encode(content, signer, singletonMap(KEY_ID_HEADER, activeKeyId)).getEncoded();
+    }
+
+    @Override
+    protected Map<String, Object> decode(String token) {
+        RsaVerifier verifier;
+        try {
+            verifier = verifiers.get(JwtHelper.headers(token).getOrDefault(KEY_ID_HEADER, activeKeyId));
+        } catch (Exception e) {
+            throw new InvalidTokenException("Cannot read JWT header", e);
+        }
+        if (verifier == null) {
+            throw new InvalidTokenException("JWT is signed with an unknown key");
+        }
+        try {
+            Jwt jwt = JwtHelper.decodeAndVerify(token, verifier);
+            Map<String, Object> claims = jsonParser.parseMap(jwt.getClaims());
+            if (claims.get(EXP) instanceof Integer) {
+                claims.put(EXP, ((Integer) claims.get(EXP)).longValue());
+            }
+            return claims;
+        } catch (Exception e) {
+            throw new InvalidTokenException("Cannot convert access token to JSON", e);
+        }
+    }
+}
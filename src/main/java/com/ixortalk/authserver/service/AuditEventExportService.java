@@ -0,0 +1,138 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streams audit events straight from the database.
+ * <p>
+ * Events and their data are read with a single join over a forward-only cursor and handed over one by one, so an
+ * export never holds more than one event in memory, whatever the size of the period.
+ * </p>
+ */
+@Service
+public class AuditEventExportService {
+
+    private static final String EXPORT_QUERY =
+        "select e.event_id, e.principal, e.event_date, e.event_type, d.name, d.value " +
+        "from jhi_persistent_audit_event e " +
+        "left join jhi_persistent_audit_evt_data d on d.event_id = e.event_id " +
+        "where e.event_date >= ? and e.event_date < ? " +
+        "order by e.event_date, e.event_id";
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    /**
+     * Hands every audit event of the given period to the consumer, in chronological order.
+     *
+     * @param fromDate the start of the period, inclusive
+     * @param toDate the end of the period, exclusive
+     * @param consumer receives the audit events
+     */
+    public void exportByDates(LocalDateTime fromDate, LocalDateTime toDate, Consumer<AuditEvent> consumer) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(ixorTalkProperties.getAudit().getExport().getFetchSize());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        transactionTemplate.execute(status -> {
+            AuditEventCollector collector = new AuditEventCollector(consumer);
+            jdbcTemplate.query(EXPORT_QUERY, collector, Timestamp.valueOf(fromDate), Timestamp.valueOf(toDate));
+            collector.complete();
+            return null;
+        });
+    }
+
+    /**
+     * Folds the joined rows of an event, one per data entry, back into a single event.
+     */
+    private static class AuditEventCollector implements RowCallbackHandler {
+
+        private final Consumer<AuditEvent> consumer;
+
+        private long eventId;
+
+        private Date timestamp;
+
+        private String principal;
+
+        private String type;
+
+        private Map<String, Object> data;
+
+        AuditEventCollector(Consumer<AuditEvent> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet resultSet) throws SQLException {
+            long rowEventId = resultSet.getLong("event_id");
+            if (data == null || rowEventId != eventId) {
+                complete();
+                eventId = rowEventId;
+                timestamp = new Date(resultSet.getTimestamp("event_date").getTime());
+                principal = resultSet.getString("principal");
+                type = resultSet.getString("event_type");
+                data = new HashMap<>();
+            }
+            String name = resultSet.getString("name");
+            if (name != null) {
+                data.put(name, resultSet.getString("value"));
+            }
+        }
+
+        void complete() {
+            if (data != null) {
+                consumer.accept(new AuditEvent(timestamp, principal, type, data));
+                data = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.domain.MailOutboxEntry;
+import com.ixortalk.authserver.repository.MailOutboxRepository;
+import com.ixortalk.authserver.service.feign.MailingService;
+import com.ixortalk.authserver.service.feign.SendMailVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Hands the mails in the outbox to the mailing service.
+ * <p>
+ * Due mails are claimed in batches: they are locked, pushed out of sight of other nodes for the lease period and
+ * sent by a fixed number of threads. Sent mails are removed, failed ones are retried with an exponential backoff
+ * until the maximum number of attempts is reached.
+ * </p>
+ */
+@Component
+public class MailOutboxDispatcher {
+
+    private static final TypeReference<Map<String, Object>> VARIABLES_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    private final Logger log = LoggerFactory.getLogger(MailOutboxDispatcher.class);
+
+    @Inject
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Inject
+    private MailingService mailingService;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ExecutorService senders;
+
+    private Timer sendLatency;
+
+    private Counter failures;
+
+    private Counter abandoned;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        senders = Executors.newFixedThreadPool(getOutbox().getConcurrency(), new ThreadFactoryBuilder().setNameFormat("mail-outbox-%d").setDaemon(true).build());
+        sendLatency = metricRegistry.timer(name(MailOutboxDispatcher.class, "send"));
+        failures = metricRegistry.counter(name(MailOutboxDispatcher.class, "failures"));
+        abandoned = metricRegistry.counter(name(MailOutboxDispatcher.class, "abandoned"));
+        metricRegistry.register(name(MailOutboxDispatcher.class, "queue-depth"), new CachedGauge<Long>(5, SECONDS) {
+            @Override
+            protected Long loadValue() {
+                return mailOutboxRepository.countByAttemptsLessThan(getOutbox().getMaxAttempts());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        senders.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${ixortalk.mail.outbox.poll-interval-millis:1000}")
+    public void dispatch() {
+        if (getOutbox().isEnabled()) {
+            dispatchDueMails();
+        }
+    }
+
+    /**
+     * Sends due mails until fewer than a full batch is left.
+     */
+    public void dispatchDueMails() {
+        try {
+            List<MailOutboxEntry> batch;
+            do {
+                batch = claimBatch();
+                List<Callable<Void>> sends = batch.stream().map(this::sendTask).collect(toList());
+                senders.invokeAll(sends);
+            } while (batch.size() == getOutbox().getBatchSize());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<MailOutboxEntry> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            ZonedDateTime now = ZonedDateTime.now();
+            List<MailOutboxEntry> due = mailOutboxRepository.findDue(now, getOutbox().getMaxAttempts(), new PageRequest(0, getOutbox().getBatchSize()));
+            due.forEach(mailOutboxEntry -> mailOutboxEntry.setNextAttemptDate(now.plusSeconds(getOutbox().getLeaseSeconds())));
+            return mailOutboxRepository.save(due);
+        });
+    }
+
+    private Callable<Void> sendTask(MailOutboxEntry mailOutboxEntry) {
+        return () -> {
+            send(mailOutboxEntry);
+            return null;
+        };
+    }
+
+    private void send(MailOutboxEntry mailOutboxEntry) {
+        try (Timer.Context ignored = sendLatency.time()) {
+            mailingService.send(new SendMailVO(
+                mailOutboxEntry.getToEmail(),
+                mailOutboxEntry.getLanguageTag(),
+                mailOutboxEntry.getSubjectKey(),
+                mailOutboxEntry.getTemplateName(),
+                objectMapper.readValue(mailOutboxEntry.getVariables(), VARIABLES_TYPE)
+            ));
+        } catch (IOException | RuntimeException e) {
+            failed(mailOutboxEntry, e);
+            return;
+        }
+        try {
+            mailOutboxRepository.delete(mailOutboxEntry.getId());
+        } catch (EmptyResultDataAccessException e) {
+            log.debug("{} was already removed", mailOutboxEntry);
+        }
+    }
+
+    private void failed(MailOutboxEntry mailOutboxEntry, Exception e) {
+        failures.inc();
+        int attempts = mailOutboxEntry.getAttempts() + 1;
+        mailOutboxEntry.setAttempts(attempts);
+        String error = e.toString();
+        mailOutboxEntry.setLastError(error.length() > 255 ? error.substring(0, 255) : error);
+        mailOutboxEntry.setNextAttemptDate(ZonedDateTime.now().plusSeconds(backoffSeconds(attempts)));
+        mailOutboxRepository.save(mailOutboxEntry);
+        if (attempts >= getOutbox().getMaxAttempts()) {
+            abandoned.inc();
+            log.error("Giving up on {} after {} attempts: {}", mailOutboxEntry, attempts, e.toString());
+        } else {
+            log.warn("Could not send {}, retrying later: {}", mailOutboxEntry, e.toString());
+        }
+    }
+
+    private long backoffSeconds(int attempts) {
+        long backoff = (long) getOutbox().getInitialBackoffSeconds() << Math.min(attempts - 1, 30);
+        return Math.min(backoff, getOutbox().getMaxBackoffSeconds());
+    }
+
+    private IxorTalkProperties.Outbox getOutbox() {
+        return ixorTalkProperties.getMail().getOutbox();
+    }
+}
@@ -23,14 +23,16 @@
  */
 package com.ixortalk.authserver.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ixortalk.authserver.domain.MailOutboxEntry;
 import com.ixortalk.authserver.domain.User;
-import com.ixortalk.authserver.service.feign.MailingService;
-import com.ixortalk.authserver.service.feign.SendMailVO;
+import com.ixortalk.authserver.repository.MailOutboxRepository;
 import com.ixortalk.authserver.web.rest.ConstructBaseUrlService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.inject.Inject;
 import java.util.Map;
@@ -38,7 +40,15 @@ import java.util.Optional;
 
 import static com.google.common.collect.Maps.newHashMap;
 
+/**
+ * Service for sending e-mails.
+ * <p>
+ * Mails are only written to the outbox here, joining the caller's transaction, and handed to the mailing service
+ * afterwards by the {@link MailOutboxDispatcher}.
+ * </p>
+ */
 @Service
+@Transactional
 public class MailService {
 
     private final Logger log = LoggerFactory.getLogger(MailService.class);
@@ -48,63 +58,76 @@ public class MailService {
     private static final String AUTHSERVER_URL = "authserverUrl";
 
     @Inject
-    private MailingService mailingService;
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Inject
+    private ObjectMapper objectMapper;
 
     @Inject
     private ConstructBaseUrlService constructBaseUrlService;
 
-    @Async
     public void sendActivationEmail(User user, Optional<String> specifiedBaseUrl) {
-        log.debug("Sending activation e-mail to '{}'", user.getEmail());
+        log.debug("Queueing activation e-mail to '{}'", user.getEmail());
 
         Map<String, Object> additionalVariables = newHashMap();
         additionalVariables.put(USER, user);
         additionalVariables.put(PLATFORM_URL, constructBaseUrlService.constructPlatformUrl());
         additionalVariables.put(AUTHSERVER_URL, specifiedBaseUrl.orElse(constructBaseUrlService.constructAuthServerUrl()));
 
-        mailingService.send(new SendMailVO(
+        enqueue(
             user.getEmail(),
             user.getLangKey(),
             "email.activation.title",
             "activationEmail",
             additionalVariables
-        ));
+        );
     }
 
-    @Async
     public void sendCreationEmail(User user, Optional<String> specifiedBaseUrl) {
-        log.debug("Sending creation e-mail to '{}'", user.getEmail());
+        log.debug("Queueing creation e-mail to '{}'", user.getEmail());
 
         Map<String, Object> additionalVariables = newHashMap();
         additionalVariables.put(USER, user);
         additionalVariables.put(PLATFORM_URL, constructBaseUrlService.constructPlatformUrl());
         additionalVariables.put(AUTHSERVER_URL, specifiedBaseUrl.orElse(constructBaseUrlService.constructAuthServerUrl()));
 
-        mailingService.send(new SendMailVO(
+        enqueue(
             user.getEmail(),
             user.getLangKey(),
             "email.activation.title",
             "creationEmail",
             additionalVariables
-        ));
+        );
     }
 
-    @Async
     public void sendPasswordResetMail(User user) {
-        log.debug("Sending password reset e-mail to '{}'", user.getEmail());
+        log.debug("Queueing password reset e-mail to '{}'", user.getEmail());
 
         Map<String, Object> additionalVariables = newHashMap();
         additionalVariables.put(USER, user);
         additionalVariables.put(PLATFORM_URL, constructBaseUrlService.constructPlatformUrl());
         additionalVariables.put(AUTHSERVER_URL, constructBaseUrlService.constructAuthServerUrl());
 
-        mailingService.send(new SendMailVO(
+        enqueue(
             user.getEmail(),
             user.getLangKey(),
             "email.reset.title",
             "passwordResetEmail",
             additionalVariables
-        ));
+        );
     }
 
+    private void enqueue(String toEmail, String languageTag, String subjectKey, String templateName, Map<String, Object> additionalVariables) {
+        MailOutboxEntry mailOutboxEntry = new MailOutboxEntry();
+        mailOutboxEntry.setToEmail(toEmail);
+        mailOutboxEntry.setLanguageTag(languageTag);
+        mailOutboxEntry.setSubjectKey(subjectKey);
+        mailOutboxEntry.setTemplateName(templateName);
+        try {
+            mailOutboxEntry.setVariables(objectMapper.writeValueAsString(additionalVariables));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize variables of mail " + templateName, e);
+        }
+        mailOutboxRepository.save(mailOutboxEntry);
+    }
 }
@@ -0,0 +1,272 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.validation.Validator;
+
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.domain.Authority;
+import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.repository.AuthorityRepository;
+import com.ixortalk.authserver.repository.UserRepository;
+import com.ixortalk.authserver.security.CachingPasswordEncoder;
+import com.ixortalk.authserver.service.util.RandomUtil;
+import com.ixortalk.authserver.web.rest.dto.ManagedUserDTO;
+import com.ixortalk.authserver.web.rest.dto.UserImportResultDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.ixortalk.authserver.web.rest.dto.UserImportResultDTO.created;
+import static com.ixortalk.authserver.web.rest.dto.UserImportResultDTO.failed;
+import static com.ixortalk.authserver.web.rest.dto.UserImportResultDTO.invalid;
+import static com.ixortalk.authserver.web.rest.dto.UserImportResultDTO.updated;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Optional.ofNullable;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Service class for importing users in bulk.
+ * <p>
+ * Applies the same rules as a single import, users are matched on their login and updated, or created when they
+ * don't exist yet. Rows are handled in chunks, each chunk in its own transaction: existing users are looked up with
+ * one query per chunk and the persistence context is cleared afterwards, so memory use does not grow with the size of
+ * the import. Rows are validated before they enter a chunk, an invalid row fails on its own, as does a row that can't
+ * be read. When the input itself is broken the import stops at that row.
+ * </p>
+ */
+@Service
+public class UserImportService {
+
+    /**
+     * Stands in for a row that could not be mapped onto a {@link ManagedUserDTO}.
+     */
+    private static final ManagedUserDTO UNPARSEABLE = new ManagedUserDTO();
+
+    private static final List<String> IMPORTED_PROPERTIES = asList("login", "firstName", "lastName", "email", "langKey");
+
+    private final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private AuthorityRepository authorityRepository;
+
+    @Inject
+    private UserService userService;
+
+    @Inject
+    private Validator validator;
+
+    @Inject
+    private CachingPasswordEncoder passwordEncoder;
+
+    @Inject
+    private MailService mailService;
+
+    @Inject
+    private EntityManager entityManager;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    private ExecutorService hashers;
+
+    @PostConstruct
+    public void init() {
+        hashers = Executors.newFixedThreadPool(
+            ixorTalkProperties.getUserImport().getHashingThreads(),
+            new ThreadFactoryBuilder().setNameFormat("user-import-hashing-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hashers.shutdown();
+    }
+
+    /**
+     * @param users the users to import, only read as far as needed for the current chunk
+     * @param results receives the results of each chunk once it is committed, in row order
+     * @return {@code false} if reading the users failed before the end, the last result then reports the row that could
+     * not be read and the rows after it are not imported
+     */
+    public boolean importUsers(Iterator<ManagedUserDTO> users, Consumer<List<UserImportResultDTO>> results) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int chunkSize = ixorTalkProperties.getUserImport().getChunkSize();
+        int row = 0;
+        while (true) {
+            int firstRow = row + 1;
+            List<ManagedUserDTO> chunk = new ArrayList<>(chunkSize);
+            boolean hasNext = true;
+            boolean readable = true;
+            try {
+                while (chunk.size() < chunkSize && (hasNext = users.hasNext())) {
+                    chunk.add(next(users, firstRow + chunk.size()));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not read rows from {} on: {}", firstRow + chunk.size(), e.toString());
+                readable = false;
+            }
+            row += chunk.size();
+            if (!chunk.isEmpty()) {
+                results.accept(importChunk(transactionTemplate, firstRow, chunk));
+            }
+            if (!readable) {
+                results.accept(singletonList(failed(row + 1, null, "unparseable")));
+                return false;
+            }
+            if (!hasNext) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A row that doesn't map fails on its own, the iterator carries on with the next one.
+     */
+    private ManagedUserDTO next(Iterator<ManagedUserDTO> users, int row) {
+        try {
+            return users.next();
+        } catch (RuntimeJsonMappingException e) {
+            log.warn("Could not read row {}: {}", row, e.getMessage());
+            return UNPARSEABLE;
+        }
+    }
+
+    private List<UserImportResultDTO> importChunk(TransactionTemplate transactionTemplate, int firstRow, List<ManagedUserDTO> chunk) {
+        try {
+            return transactionTemplate.execute(status -> importChunk(firstRow, chunk));
+        } catch (RuntimeException e) {
+            log.warn("Could not import rows {} to {}: {}", firstRow, firstRow + chunk.size() - 1, e.toString());
+            List<UserImportResultDTO> results = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(failed(firstRow + i, chunk.get(i).getLogin(), "error"));
+            }
+            return results;
+        } finally {
+            entityManager.clear();
+        }
+    }
+
+    private List<UserImportResultDTO> importChunk(int firstRow, List<ManagedUserDTO> chunk) {
+        Set<String> logins = chunk.stream().map(ManagedUserDTO::getLogin).filter(Objects::nonNull).map(String::toLowerCase).collect(toSet());
+        Set<String> emails = chunk.stream().map(ManagedUserDTO::getEmail).filter(Objects::nonNull).collect(toSet());
+        Map<String, User> usersByLogin = userRepository.findAllByLoginIn(logins).stream().collect(toMap(User::getLogin, Function.identity()));
+        Map<String, User> usersByEmail = userRepository.findAllByEmailIn(emails).stream().collect(toMap(User::getEmail, Function.identity()));
+        Map<String, Authority> authorities = authorityRepository.findAll().stream().collect(toMap(Authority::getName, Function.identity()));
+
+        List<UserImportResultDTO> results = new ArrayList<>(chunk.size());
+        List<User> newUsers = new ArrayList<>();
+        List<ManagedUserDTO> newUserDTOs = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            int row = firstRow + i;
+            ManagedUserDTO managedUserDTO = chunk.get(i);
+            if (managedUserDTO == UNPARSEABLE) {
+                results.add(failed(row, null, "unparseable"));
+                continue;
+            }
+            Optional<String> invalidProperty = invalidProperty(managedUserDTO);
+            if (invalidProperty.isPresent()) {
+                results.add(invalid(row, managedUserDTO.getLogin(), invalidProperty.get()));
+                continue;
+            }
+            String login = managedUserDTO.getLogin().toLowerCase();
+            User existingByEmail = usersByEmail.get(managedUserDTO.getEmail());
+            User existingByLogin = usersByLogin.get(login);
+            if (existingByEmail != null && existingByEmail != existingByLogin) {
+                results.add(failed(row, login, "emailexists"));
+            } else if (existingByLogin != null && managedUserDTO.getId() != null && !managedUserDTO.getId().equals(existingByLogin.getId())) {
+                results.add(failed(row, login, "userexists"));
+            } else if (existingByLogin != null) {
+                userService.updateUser(existingByLogin, managedUserDTO, authorities::get);
+                usersByEmail.values().remove(existingByLogin);
+                usersByEmail.put(existingByLogin.getEmail(), existingByLogin);
+                results.add(updated(row, login));
+            } else {
+                User user = userService.newUser(managedUserDTO, authorities::get);
+                usersByLogin.put(login, user);
+                usersByEmail.put(user.getEmail(), user);
+                newUsers.add(user);
+                newUserDTOs.add(managedUserDTO);
+                results.add(created(row, login));
+            }
+        }
+
+        // Hashing dominates the cost of creating a user, spread it over the hashing threads
+        List<CompletableFuture<String>> encodedPasswords = newUsers.stream()
+            .map(user -> supplyAsync(() -> passwordEncoder.encode(RandomUtil.generatePassword()), hashers))
+            .collect(toList());
+        for (int i = 0; i < newUsers.size(); i++) {
+            newUsers.get(i).setPassword(encodedPasswords.get(i).join());
+        }
+        userRepository.save(newUsers);
+        for (int i = 0; i < newUsers.size(); i++) {
+            mailService.sendCreationEmail(newUsers.get(i), ofNullable(newUserDTOs.get(i).getEmailActivationBaseUrl()));
+        }
+        entityManager.flush();
+        log.debug("Imported rows {} to {}, created {} users", firstRow, firstRow + chunk.size() - 1, newUsers.size());
+        return results;
+    }
+
+    /**
+     * Only the properties copied onto the user are validated, new users get a generated password.
+     */
+    private Optional<String> invalidProperty(ManagedUserDTO managedUserDTO) {
+        if (managedUserDTO.getEmail() == null) {
+            return Optional.of("email");
+        }
+        return IMPORTED_PROPERTIES.stream()
+            .filter(property -> !validator.validateProperty(managedUserDTO, property).isEmpty())
+            .findFirst();
+    }
+}
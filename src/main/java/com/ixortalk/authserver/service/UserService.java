@@ -23,18 +23,24 @@
  */
 package com.ixortalk.authserver.service;
 
+import com.ixortalk.authserver.config.IxorTalkProperties;
 import com.ixortalk.authserver.domain.Authority;
 import com.ixortalk.authserver.domain.User;
 import com.ixortalk.authserver.repository.AuthorityRepository;
 import com.ixortalk.authserver.repository.UserRepository;
 import com.ixortalk.authserver.security.SecurityUtils;
+import com.ixortalk.authserver.security.CachingPasswordEncoder;
+import com.ixortalk.authserver.security.token.CachingTokenStore;
+import com.ixortalk.authserver.service.profilepicture.PresignedProfilePictureUrls;
 import com.ixortalk.authserver.service.util.RandomUtil;
 import com.ixortalk.authserver.web.rest.ConstructBaseUrlService;
 import com.ixortalk.authserver.web.rest.dto.ManagedUserDTO;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -44,10 +50,16 @@ import javax.persistence.Query;
 import java.time.ZonedDateTime;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+import static java.util.Collections.emptyList;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * Service class for managing users.
@@ -60,7 +72,7 @@ public class UserService {
 
 
     @Inject
-    private PasswordEncoder passwordEncoder;
+    private CachingPasswordEncoder passwordEncoder;
 
     @Inject
     private UserRepository userRepository;
@@ -77,6 +89,15 @@ public class UserService {
     @Inject
     private ConstructBaseUrlService constructBaseUrlService;
 
+    @Autowired(required = false)
+    private CachingTokenStore cachingTokenStore;
+
+    @Autowired(required = false)
+    private PresignedProfilePictureUrls presignedProfilePictureUrls;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
     public Optional<User> activateRegistration(String key) {
         log.debug("Activating user for activation key {}", key);
         return userRepository.findOneByActivationKey(key)
@@ -100,6 +121,7 @@ public class UserService {
                 return user.getResetDate().isAfter(oneDayAgo);
            })
            .map(user -> {
+                passwordEncoder.evict(user.getPassword());
                 user.setPassword(passwordEncoder.encode(newPassword));
                 user.setResetKey(null);
                 user.setResetDate(null);
@@ -146,6 +168,21 @@ public class UserService {
     }
 
     public User createUser(ManagedUserDTO managedUserDTO) {
+        User user = newUser(managedUserDTO, authorityRepository::findOne);
+        String encryptedPassword = passwordEncoder.encode(RandomUtil.generatePassword());
+        user.setPassword(encryptedPassword);
+        userRepository.save(user);
+        //userSearchRepository.save(user);
+        log.debug("Created Information for User: {}", user);
+        return user;
+    }
+
+    /**
+     * A new, activated user with a reset key, but without a password yet.
+     *
+     * @param authorities looks up an authority by its name, unknown names are skipped
+     */
+    public User newUser(ManagedUserDTO managedUserDTO, Function<String, Authority> authorities) {
         User user = new User();
         user.setLogin(managedUserDTO.getLogin());
         user.setFirstName(managedUserDTO.getFirstName());
@@ -157,23 +194,38 @@ public class UserService {
             user.setLangKey(managedUserDTO.getLangKey());
         }
         if (managedUserDTO.getAuthorities() != null) {
-            Set<Authority> authorities = new HashSet<>();
-            managedUserDTO.getAuthorities().stream().forEach(
-                authority -> authorities.add(authorityRepository.findOne(authority))
-            );
-            user.setAuthorities(authorities);
+            user.setAuthorities(resolveAuthorities(managedUserDTO.getAuthorities(), authorities));
         }
-        String encryptedPassword = passwordEncoder.encode(RandomUtil.generatePassword());
-        user.setPassword(encryptedPassword);
         user.setResetKey(RandomUtil.generateResetKey());
         user.setResetDate(ZonedDateTime.now());
         user.setActivated(true);
-        userRepository.save(user);
-        //userSearchRepository.save(user);
-        log.debug("Created Information for User: {}", user);
         return user;
     }
 
+    public void updateUser(User user, ManagedUserDTO managedUserDTO) {
+        updateUser(user, managedUserDTO, authorityRepository::findOne);
+    }
+
+    /**
+     * @param authorities looks up an authority by its name, unknown names are skipped
+     */
+    public void updateUser(User user, ManagedUserDTO managedUserDTO, Function<String, Authority> authorities) {
+        user.setLogin(managedUserDTO.getLogin());
+        user.setFirstName(managedUserDTO.getFirstName());
+        user.setLastName(managedUserDTO.getLastName());
+        user.setEmail(managedUserDTO.getEmail());
+        user.setActivated(managedUserDTO.isActivated());
+        user.setLangKey(managedUserDTO.getLangKey());
+        user.getAuthorities().clear();
+        if (managedUserDTO.getAuthorities() != null) {
+            user.getAuthorities().addAll(resolveAuthorities(managedUserDTO.getAuthorities(), authorities));
+        }
+    }
+
+    private static Set<Authority> resolveAuthorities(Set<String> names, Function<String, Authority> authorities) {
+        return names.stream().map(authorities).filter(Objects::nonNull).collect(toSet());
+    }
+
     public void updateUserInformation(String firstName, String lastName, String email, String langKey) {
         userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).ifPresent(u -> {
             u.setFirstName(firstName);
@@ -186,8 +238,16 @@ public class UserService {
         });
     }
 
+    /**
+     * Deletes the user along with its access tokens. Only the token cache of this node is evicted, other nodes keep
+     * accepting the user's cached tokens for up to ixortalk.oauth.token-store.cache.time-to-live-seconds.
+     */
     public void deleteUserInformation(String login) {
         userRepository.findOneByLogin(login).ifPresent(u -> {
+            if (cachingTokenStore != null) {
+                cachingTokenStore.evictTokensOfUser(login);
+            }
+            passwordEncoder.evict(u.getPassword());
             Query query = entityManager.createNativeQuery(
                 "DELETE FROM OAUTH_ACCESS_TOKEN o WHERE o.USER_NAME = :login");
             query.setParameter("login", login).executeUpdate();
@@ -199,6 +259,7 @@ public class UserService {
     public void changePassword(String password) {
         userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).ifPresent(u -> {
             String encryptedPassword = passwordEncoder.encode(password);
+            passwordEncoder.evict(u.getPassword());
             u.setPassword(encryptedPassword);
             userRepository.save(u);
             log.debug("Changed password for User: {}", u);
@@ -207,26 +268,68 @@ public class UserService {
 
     @Transactional(readOnly = true)
     public Optional<User> getUserWithAuthoritiesByLogin(String login) {
-        return userRepository.findOneByLogin(login).map(u -> {
-            u.getAuthorities().size();
-            return u;
-        });
+        return userRepository.findOneWithAuthoritiesByLogin(login).map(UserService::initializeAuthorities);
     }
 
     @Transactional(readOnly = true)
     public User getUserWithAuthorities(Long id) {
-        User user = userRepository.findOne(id);
-        user.getAuthorities().size(); // eagerly load the association
-        return user;
+        return userRepository.findOneWithAuthoritiesById(id).orElse(null);
     }
 
     @Transactional(readOnly = true)
     public User getUserWithAuthorities() {
-        User user = userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).get();
-        user.getAuthorities().size(); // eagerly load the association
+        return getUserWithAuthoritiesByLogin(SecurityUtils.getCurrentUserLogin()).get();
+    }
+
+    /**
+     * The authorities are fetched along with the user, except when the lookup is answered by the query cache: that
+     * only restores the user itself, its authorities then come from the collection cache.
+     */
+    private static User initializeAuthorities(User user) {
+        Hibernate.initialize(user.getAuthorities());
         return user;
     }
 
+    /**
+     * Loads the authorities of the given users, still managed by the current persistence context, in one query
+     * instead of one per user.
+     */
+    @Transactional(readOnly = true)
+    public void fetchAuthorities(List<User> users) {
+        if (!users.isEmpty()) {
+            userRepository.findAllWithAuthoritiesByIdIn(users.stream().map(User::getId).collect(toList()));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<ManagedUserDTO> getUsersAfter(Long afterId, int size) {
+        List<Long> ids = userRepository.findIdsAfter(afterId, new PageRequest(0, size));
+        if (ids.isEmpty()) {
+            return emptyList();
+        }
+        return userRepository.findAllWithAuthoritiesByIdIn(ids).stream()
+            .map(user -> new ManagedUserDTO(user, constructProfilePictureUrl(user)))
+            .collect(toList());
+    }
+
+    /**
+     * Walks all users in id order, a chunk at a time. Each chunk is detached before the next one is loaded, so
+     * memory use stays constant however many users there are.
+     */
+    @Transactional(readOnly = true)
+    public void exportUsers(int chunkSize, Consumer<List<ManagedUserDTO>> chunkConsumer) {
+        Long afterId = Long.MIN_VALUE;
+        List<ManagedUserDTO> chunk;
+        do {
+            chunk = getUsersAfter(afterId, chunkSize);
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(chunk);
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+            entityManager.clear();
+        } while (chunk.size() == chunkSize);
+    }
+
     /**
      * Not activated users should be automatically deleted after 3 days.
      * <p>
@@ -244,7 +347,15 @@ public class UserService {
         }
     }
 
+    /**
+     * With direct URLs enabled this is a presigned S3 URL, which expires shortly. Otherwise the picture is served, or
+     * redirected to, by the auth server.
+     */
     public String constructProfilePictureUrl(User user) {
-        return ofNullable(user.getProfilePictureKey()).map(profilePictureKey -> constructBaseUrlService.constructAuthServerUrl() + "/api/profile-pictures/" + profilePictureKey).orElse(null);
+        return ofNullable(user.getProfilePictureKey())
+            .map(profilePictureKey -> presignedProfilePictureUrls != null && ixorTalkProperties.getProfilePicture().getRedirect().isDirectUrls()
+                ? presignedProfilePictureUrls.get(profilePictureKey).getUrl().toString()
+                : constructBaseUrlService.constructAuthServerUrl() + "/api/profile-pictures/" + profilePictureKey)
+            .orElse(null);
     }
 }
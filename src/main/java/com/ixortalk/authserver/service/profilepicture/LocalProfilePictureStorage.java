@@ -0,0 +1,99 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service.profilepicture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.springframework.util.Assert;
+import org.springframework.web.multipart.MultipartFile;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.Optional.ofNullable;
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+/**
+ * Stores profile pictures as {@link ProfilePictureFile}s in a local directory, for single node deployments and for
+ * running without any cloud service.
+ * <p>
+ * A picture is written to a temporary file in the same directory and moved in place atomically, so a reader never sees
+ * half a picture and a failed upload leaves nothing behind. Temporary files left by a crash are removed on startup.
+ * </p>
+ */
+public class LocalProfilePictureStorage implements ProfilePictureStorage {
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Keys are generated UUIDs, optionally with a thumbnail size appended, never paths.
+     */
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path directory;
+
+    public LocalProfilePictureStorage(Path directory) throws IOException {
+        this.directory = createDirectories(directory);
+        File[] leftOvers = directory.toFile().listFiles((dir, name) -> name.endsWith(TEMPORARY_SUFFIX));
+        for (File leftOver : ofNullable(leftOvers).orElse(new File[0])) {
+            deleteIfExists(leftOver.toPath());
+        }
+    }
+
+    @Override
+    public void save(String key, MultipartFile picture) throws IOException {
+        Path file = file(key);
+        Path temporary = createTempFile(directory, key, TEMPORARY_SUFFIX);
+        try {
+            try (InputStream content = picture.getInputStream()) {
+                ProfilePictureFile.write(temporary, ofNullable(picture.getContentType()).orElse(APPLICATION_OCTET_STREAM_VALUE), content);
+            }
+            move(temporary, file, ATOMIC_MOVE);
+        } finally {
+            deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public Optional<StoredProfilePicture> get(String key) throws IOException {
+        try {
+            return Optional.of(ProfilePictureFile.open(file(key)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Path file(String key) {
+        Assert.isTrue(KEY.matcher(key).matches(), "Not a profile picture key: " + key);
+        return directory.resolve(key);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service.profilepicture;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AmazonS3;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.aws.s3.library.config.AwsS3Properties;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.lang.Math.max;
+import static java.time.Instant.now;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Short-lived S3 URLs for profile pictures, so their bytes do not have to pass through the auth server.
+ * <p>
+ * Signing is local, but a URL is only worth caching when clients can cache it as well. A signed URL is therefore kept
+ * and handed out until the renewal margin before its expiry, so every client gets at least that margin to use it.
+ * </p>
+ */
+public class PresignedProfilePictureUrls {
+
+    @Inject
+    private AmazonS3 amazonS3;
+
+    @Inject
+    private AwsS3Properties awsS3Properties;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Cache<String, PresignedUrl> urls;
+
+    private Meter signed;
+
+    @PostConstruct
+    public void init() {
+        IxorTalkProperties.Redirect redirect = getRedirect();
+        urls = Caffeine.newBuilder()
+            .maximumSize(redirect.getMaximumSize())
+            .expireAfterWrite(max(0, redirect.getExpirySeconds() - redirect.getRenewalMarginSeconds()), SECONDS)
+            .build();
+        signed = metricRegistry.meter(name(PresignedProfilePictureUrls.class, "signed"));
+    }
+
+    /**
+     * For keys known to be stored, such as the key of a user's original picture.
+     */
+    public PresignedUrl get(String key) {
+        return urls.get(key, this::presign);
+    }
+
+    /**
+     * For keys that may not be stored yet, such as thumbnails. Existence is checked with S3 only when no URL is cached.
+     */
+    public Optional<PresignedUrl> getIfExists(String key) {
+        PresignedUrl cached = urls.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (!amazonS3.doesObjectExist(awsS3Properties.getS3().getDefaultBucket(), key)) {
+            return Optional.empty();
+        }
+        return Optional.of(get(key));
+    }
+
+    private PresignedUrl presign(String key) {
+        Instant expiry = now().plusSeconds(getRedirect().getExpirySeconds());
+        URL url = amazonS3.generatePresignedUrl(awsS3Properties.getS3().getDefaultBucket(), key, Date.from(expiry), HttpMethod.GET);
+        signed.mark();
+        return new PresignedUrl(url, expiry.minusSeconds(getRedirect().getRenewalMarginSeconds()));
+    }
+
+    private IxorTalkProperties.Redirect getRedirect() {
+        return ixorTalkProperties.getProfilePicture().getRedirect();
+    }
+
+    public static class PresignedUrl {
+
+        private final URL url;
+
+        private final Instant renewal;
+
+        private PresignedUrl(URL url, Instant renewal) {
+            this.url = url;
+            this.renewal = renewal;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        /**
+         * How long a client may reuse this URL, until it would be renewed here.
+         */
+        public long getMaxAgeSeconds() {
+            return max(0, Duration.between(now(), renewal).getSeconds());
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service.profilepicture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.size;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.Arrays.sort;
+import static java.util.Comparator.comparingLong;
+import static org.springframework.util.DigestUtils.md5DigestAsHex;
+
+/**
+ * Bounded cache of profile pictures on local disk, in front of S3.
+ * <p>
+ * Profile picture keys are never reused, so a cached picture never goes stale. Every picture is a
+ * {@link ProfilePictureFile}, written to a temporary file first and moved in place so a reader never sees half a
+ * picture. Once the cached pictures grow beyond the maximum size, the least recently used ones are deleted.
+ * Pictures left on disk by a previous run are picked up again, the least recently written ones first in line for eviction.
+ * </p>
+ * <p>
+ * The lock only covers the bookkeeping, files are opened and deleted outside of it. A picture can therefore be deleted
+ * between finding it and opening it, that counts as a miss.
+ * </p>
+ */
+public class ProfilePictureDiskCache {
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Logger log = LoggerFactory.getLogger(ProfilePictureDiskCache.class);
+
+    private final Path directory;
+
+    private final long maxSizeBytes;
+
+    /**
+     * Sizes of the cached files by file name, least recently used first. Guards the total size as well.
+     */
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalSize;
+
+    private final Meter hits;
+
+    private final Meter misses;
+
+    private final Meter evictions;
+
+    public ProfilePictureDiskCache(IxorTalkProperties ixorTalkProperties, MetricRegistry metricRegistry) throws IOException {
+        IxorTalkProperties.DiskCache diskCache = ixorTalkProperties.getProfilePicture().getDiskCache();
+        this.directory = createDirectories(Paths.get(diskCache.getDirectory()));
+        this.maxSizeBytes = diskCache.getMaxSizeBytes();
+        this.hits = metricRegistry.meter(name(ProfilePictureDiskCache.class, "hit"));
+        this.misses = metricRegistry.meter(name(ProfilePictureDiskCache.class, "miss"));
+        this.evictions = metricRegistry.meter(name(ProfilePictureDiskCache.class, "eviction"));
+        metricRegistry.register(name(ProfilePictureDiskCache.class, "size-bytes"), (Gauge<Long>) this::getTotalSize);
+        load();
+    }
+
+    private void load() throws IOException {
+        File[] existing = directory.toFile().listFiles(File::isFile);
+        if (existing == null) {
+            throw new IOException("Could not list profile picture cache directory " + directory);
+        }
+        sort(existing, comparingLong(File::lastModified));
+        List<String> evicted;
+        synchronized (files) {
+            for (File file : existing) {
+                if (file.getName().endsWith(TEMPORARY_SUFFIX)) {
+                    deleteIfExists(file.toPath());
+                } else {
+                    files.put(file.getName(), file.length());
+                    totalSize += file.length();
+                }
+            }
+            evicted = evict();
+            log.info("Profile picture cache in {} holds {} pictures, {} bytes", directory, files.size(), totalSize);
+        }
+        evicted.forEach(this::delete);
+    }
+
+    /**
+     * Opens the cached picture, the caller has to close it.
+     */
+    public Optional<ProfilePictureFile> get(String profilePictureKey) {
+        String fileName = fileName(profilePictureKey);
+        boolean cached;
+        synchronized (files) {
+            cached = files.get(fileName) != null;
+        }
+        if (cached) {
+            try {
+                ProfilePictureFile picture = ProfilePictureFile.open(directory.resolve(fileName));
+                hits.mark();
+                return Optional.of(picture);
+            } catch (NoSuchFileException e) {
+                log.debug("Cached profile picture {} was deleted before it could be opened", fileName);
+                remove(fileName);
+            } catch (IOException e) {
+                log.warn("Could not read cached profile picture {}", fileName, e);
+                remove(fileName);
+            }
+        }
+        misses.mark();
+        return Optional.empty();
+    }
+
+    /**
+     * Writes the picture to the cache and opens it, the caller has to close it.
+     */
+    public ProfilePictureFile put(String profilePictureKey, String contentType, InputStream content) throws IOException {
+        String fileName = fileName(profilePictureKey);
+        Path temporary = createTempFile(directory, fileName, TEMPORARY_SUFFIX);
+        try {
+            ProfilePictureFile.write(temporary, contentType, content);
+            long fileSize = size(temporary);
+            ProfilePictureFile picture = ProfilePictureFile.open(temporary);
+            try {
+                move(temporary, directory.resolve(fileName), ATOMIC_MOVE);
+            } catch (IOException e) {
+                picture.close();
+                throw e;
+            }
+            List<String> evicted;
+            synchronized (files) {
+                Long previous = files.put(fileName, fileSize);
+                totalSize += fileSize - (previous == null ? 0 : previous);
+                evicted = evict();
+            }
+            evicted.forEach(this::delete);
+            return picture;
+        } finally {
+            deleteIfExists(temporary);
+        }
+    }
+
+    public long getTotalSize() {
+        synchronized (files) {
+            return totalSize;
+        }
+    }
+
+    /**
+     * Called with the lock held, the caller deletes the returned files once it has released the lock.
+     */
+    private List<String> evict() {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> leastRecentlyUsed = files.entrySet().iterator();
+        while (totalSize > maxSizeBytes && leastRecentlyUsed.hasNext()) {
+            Map.Entry<String, Long> file = leastRecentlyUsed.next();
+            evicted.add(file.getKey());
+            totalSize -= file.getValue();
+            leastRecentlyUsed.remove();
+            evictions.mark();
+        }
+        return evicted;
+    }
+
+    /**
+     * A picture written again in the meantime is deleted along with it, which only costs a miss.
+     */
+    private void remove(String fileName) {
+        synchronized (files) {
+            Long size = files.remove(fileName);
+            if (size == null) {
+                return;
+            }
+            totalSize -= size;
+        }
+        delete(fileName);
+    }
+
+    private void delete(String fileName) {
+        try {
+            deleteIfExists(directory.resolve(fileName));
+        } catch (IOException e) {
+            log.warn("Could not delete cached profile picture {}", fileName, e);
+        }
+    }
+
+    /**
+     * Hashing the key gives a safe file name whatever the key looks like.
+     */
+    private static String fileName(String profilePictureKey) {
+        return md5DigestAsHex(profilePictureKey.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service.profilepicture;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+import org.springframework.util.Assert;
+
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.springframework.util.StreamUtils.copy;
+
+/**
+ * A profile picture in a file of its own, holding its content type followed by its bytes.
+ * <p>
+ * Once opened, the file stays readable after it is deleted, until this picture is closed.
+ * </p>
+ */
+public class ProfilePictureFile implements StoredProfilePicture {
+
+    private final FileChannel channel;
+
+    private final String contentType;
+
+    private final long offset;
+
+    private ProfilePictureFile(FileChannel channel, String contentType, long offset) {
+        this.channel = channel;
+        this.contentType = contentType;
+        this.offset = offset;
+    }
+
+    public static void write(Path file, String contentType, InputStream content) throws IOException {
+        Assert.notNull(contentType, "A profile picture file needs a content type");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(newOutputStream(file)))) {
+            outputStream.writeUTF(contentType);
+            copy(content, outputStream);
+        }
+    }
+
+    public static ProfilePictureFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, READ);
+        try {
+            String contentType = new DataInputStream(Channels.newInputStream(channel)).readUTF();
+            return new ProfilePictureFile(channel, contentType, channel.position());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public long getContentLength() throws IOException {
+        return channel.size() - offset;
+    }
+
+    /**
+     * Copies the picture with {@link FileChannel#transferTo}, which lets the operating system copy straight from the
+     * page cache when the target is backed by a file or socket.
+     */
+    @Override
+    public void transferTo(OutputStream outputStream) throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long position = offset;
+        long size = channel.size();
+        while (position < size) {
+            position += channel.transferTo(position, size - position, target);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service.profilepicture;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.inject.Inject;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.config.ProfilePictureConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.awt.RenderingHints.KEY_INTERPOLATION;
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.round;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.reverseOrder;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
+import static org.springframework.http.MediaType.IMAGE_PNG_VALUE;
+
+/**
+ * Generates resized copies of every uploaded profile picture, stored next to it under derived keys.
+ * <p>
+ * Resizing runs on a small bounded pool, so an upload returns as soon as the original is stored. Until its thumbnails
+ * are stored, or when the pool had no room for them, a picture is only available in its original size.
+ * </p>
+ */
+@Component
+@Conditional(ProfilePictureConfiguration.OnProfilePictureStorage.class)
+public class ProfilePictureThumbnails {
+
+    /**
+     * Pictures beyond this are not decoded at all, decoding them would take too much memory.
+     */
+    private static final long MAX_SOURCE_PIXELS = 50_000_000;
+
+    private final Logger log = LoggerFactory.getLogger(ProfilePictureThumbnails.class);
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private ProfilePictureStorage profilePictureStorage;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private ThreadPoolExecutor resizers;
+
+    private Timer resizeLatency;
+
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        IxorTalkProperties.Thumbnails thumbnails = getThumbnails();
+        resizers = new ThreadPoolExecutor(
+            thumbnails.getThreads(), thumbnails.getThreads(), 0, MILLISECONDS,
+            new ArrayBlockingQueue<>(thumbnails.getQueueCapacity()),
+            new ThreadFactoryBuilder().setNameFormat("profile-picture-thumbnails-%d").setDaemon(true).build());
+        resizeLatency = metricRegistry.timer(name(ProfilePictureThumbnails.class, "resize"));
+        rejected = metricRegistry.counter(name(ProfilePictureThumbnails.class, "rejected"));
+        metricRegistry.register(name(ProfilePictureThumbnails.class, "queue-depth"), (Gauge<Integer>) () -> resizers.getQueue().size());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        resizers.shutdown();
+    }
+
+    /**
+     * Key of the thumbnail nearest to the requested size: the smallest one at least as large, or the largest one.
+     */
+    public String thumbnailKey(String profilePictureKey, int size) {
+        List<Integer> sizes = getThumbnails().getSizes();
+        int nearest = sizes.stream()
+            .filter(thumbnailSize -> thumbnailSize >= size)
+            .min(naturalOrder())
+            .orElseGet(() -> sizes.stream().max(naturalOrder()).orElse(size));
+        return profilePictureKey + "-" + nearest;
+    }
+
+    /**
+     * Queues the thumbnails of an uploaded picture. The upload is read right away, its temporary file does not outlive
+     * the request.
+     */
+    public void generate(String profilePictureKey, MultipartFile upload) {
+        try {
+            byte[] original = upload.getBytes();
+            resizers.execute(() -> generate(profilePictureKey, original));
+        } catch (RejectedExecutionException e) {
+            rejected.inc();
+            log.warn("Too many profile pictures waiting for thumbnails, {} gets none", profilePictureKey);
+        } catch (IOException e) {
+            log.error("Could not read profile picture {} for its thumbnails", profilePictureKey, e);
+        }
+    }
+
+    /**
+     * Every thumbnail is scaled down from the next larger one rather than from the original.
+     */
+    private void generate(String profilePictureKey, byte[] original) {
+        try (Timer.Context ignored = resizeLatency.time()) {
+            BufferedImage image = read(original);
+            if (image == null) {
+                log.info("Profile picture {} is not an image that can be resized, it gets no thumbnails", profilePictureKey);
+                return;
+            }
+            for (int size : getThumbnails().getSizes().stream().sorted(reverseOrder()).collect(toList())) {
+                image = resize(image, size);
+                save(thumbnailKey(profilePictureKey, size), image);
+            }
+        } catch (Exception e) {
+            log.error("Could not generate thumbnails for profile picture {}", profilePictureKey, e);
+        }
+    }
+
+    private static BufferedImage read(byte[] original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    throw new IOException("Picture of " + reader.getWidth(0) + "x" + reader.getHeight(0) + " is too large to resize");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the longest side down to the given size, at most halving it per step: a single bilinear step across a
+     * larger factor skips most of the source pixels. Smaller pictures keep their size.
+     */
+    private static BufferedImage resize(BufferedImage image, int size) {
+        double scale = min(1.0, (double) size / max(image.getWidth(), image.getHeight()));
+        int targetWidth = max(1, (int) round(image.getWidth() * scale));
+        int targetHeight = max(1, (int) round(image.getHeight() * scale));
+        int type = image.getColorModel().hasAlpha() ? TYPE_INT_ARGB : TYPE_INT_RGB;
+
+        BufferedImage resized = image;
+        do {
+            int width = max(targetWidth, resized.getWidth() / 2);
+            int height = max(targetHeight, resized.getHeight() / 2);
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(resized, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            resized = step;
+        } while (resized.getWidth() != targetWidth || resized.getHeight() != targetHeight);
+        return resized;
+    }
+
+    /**
+     * Pictures with transparency are stored as PNG, all others as JPEG.
+     */
+    private void save(String thumbnailKey, BufferedImage thumbnail) throws IOException {
+        boolean transparent = thumbnail.getColorModel().hasAlpha();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(thumbnail, transparent ? "png" : "jpg", bytes);
+        profilePictureStorage.save(thumbnailKey, new Thumbnail(thumbnailKey, transparent ? IMAGE_PNG_VALUE : IMAGE_JPEG_VALUE, bytes.toByteArray()));
+    }
+
+    private IxorTalkProperties.Thumbnails getThumbnails() {
+        return ixorTalkProperties.getProfilePicture().getThumbnails();
+    }
+
+    /**
+     * Storage takes multipart files, as uploaded.
+     */
+    private static class Thumbnail implements MultipartFile {
+
+        private final String name;
+
+        private final String contentType;
+
+        private final byte[] bytes;
+
+        private Thumbnail(String name, String contentType, byte[] bytes) {
+            this.name = name;
+            this.contentType = contentType;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return name;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return bytes.length == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            FileCopyUtils.copy(bytes, dest);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service.profilepicture;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.S3Object;
+import com.ixortalk.aws.s3.library.config.AwsS3Template;
+import org.springframework.web.multipart.MultipartFile;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.util.StreamUtils.copy;
+
+/**
+ * Stores profile pictures in the default S3 bucket, optionally with a {@link ProfilePictureDiskCache} in front of it.
+ */
+public class S3ProfilePictureStorage implements ProfilePictureStorage {
+
+    private final AwsS3Template awsS3Template;
+
+    private final Optional<ProfilePictureDiskCache> diskCache;
+
+    public S3ProfilePictureStorage(AwsS3Template awsS3Template, Optional<ProfilePictureDiskCache> diskCache) {
+        this.awsS3Template = awsS3Template;
+        this.diskCache = diskCache;
+    }
+
+    @Override
+    public void save(String key, MultipartFile picture) throws IOException {
+        awsS3Template.save(key, picture);
+    }
+
+    @Override
+    public Optional<StoredProfilePicture> get(String key) {
+        Optional<ProfilePictureFile> cached = diskCache.flatMap(cache -> cache.get(key));
+        if (cached.isPresent()) {
+            return Optional.of(cached.get());
+        }
+        return Optional.ofNullable(getFromS3(key)).map(s3Object -> new S3ProfilePicture(key, s3Object));
+    }
+
+    private S3Object getFromS3(String key) {
+        try {
+            return awsS3Template.get(key);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == NOT_FOUND.value()) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fills the disk cache while it is being read.
+     */
+    private class S3ProfilePicture implements StoredProfilePicture {
+
+        private final String key;
+
+        private final S3Object s3Object;
+
+        private S3ProfilePicture(String key, S3Object s3Object) {
+            this.key = key;
+            this.s3Object = s3Object;
+        }
+
+        @Override
+        public String getContentType() {
+            return s3Object.getObjectMetadata().getContentType();
+        }
+
+        @Override
+        public long getContentLength() {
+            return s3Object.getObjectMetadata().getContentLength();
+        }
+
+        @Override
+        public void transferTo(OutputStream outputStream) throws IOException {
+            if (diskCache.isPresent()) {
+                try (ProfilePictureFile cached = diskCache.get().put(key, getContentType(), s3Object.getObjectContent())) {
+                    cached.transferTo(outputStream);
+                }
+            } else {
+                copy(s3Object.getObjectContent(), outputStream);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            s3Object.close();
+        }
+    }
+}
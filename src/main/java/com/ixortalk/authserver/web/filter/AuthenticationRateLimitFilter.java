@@ -0,0 +1,199 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.filter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.security.ratelimit.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import static org.springframework.util.StringUtils.commaDelimitedListToStringArray;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * Throttles authentication attempts on the token endpoint and the login form, before any password is checked.
+ * <p>
+ * Every attempt takes a token from the bucket of its client id, of its login and of its remote address. When one of
+ * them is empty the attempt is answered with 429 Too Many Requests and a Retry-After header. A successful attempt gets
+ * its client id and login tokens back, so only failures count towards those limits: logging in often doesn't lock a
+ * user out, and a client can't be drained by its own users.
+ * </p>
+ * <p>
+ * Behind a proxy every attempt has the address of the proxy. Unless the servlet container already resolves the
+ * forwarded headers, the proxies are configured as trusted and the address is taken from X-Forwarded-For instead.
+ * </p>
+ */
+public class AuthenticationRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthenticationRateLimitFilter.class);
+
+    static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private static final String BASIC = "Basic ";
+
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    private static final RequestMatcher AUTHENTICATION_REQUESTS = new OrRequestMatcher(
+        new AntPathRequestMatcher("/oauth/token"),
+        new AntPathRequestMatcher("/login", "POST"));
+
+    private final RateLimiter rateLimiter;
+
+    private final IxorTalkProperties.RateLimit rateLimit;
+
+    private final Meter allowed;
+
+    private final Meter rejectedByClient;
+
+    private final Meter rejectedByLogin;
+
+    private final Meter rejectedByAddress;
+
+    public AuthenticationRateLimitFilter(RateLimiter rateLimiter, IxorTalkProperties.RateLimit rateLimit, MetricRegistry metricRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.rateLimit = rateLimit;
+        this.allowed = metricRegistry.meter(MetricRegistry.name(AuthenticationRateLimitFilter.class, "allowed"));
+        this.rejectedByClient = metricRegistry.meter(MetricRegistry.name(AuthenticationRateLimitFilter.class, "rejected", "client"));
+        this.rejectedByLogin = metricRegistry.meter(MetricRegistry.name(AuthenticationRateLimitFilter.class, "rejected", "login"));
+        this.rejectedByAddress = metricRegistry.meter(MetricRegistry.name(AuthenticationRateLimitFilter.class, "rejected", "address"));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rateLimit.isEnabled() || !AUTHENTICATION_REQUESTS.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String clientId = clientId(request);
+        String login = login(request);
+        String address = address(request, rateLimit.getTrustedProxies());
+        long retryAfterSeconds = Math.max(
+            Math.max(
+                tryConsume("client:", clientId, rateLimit.getClient(), rejectedByClient),
+                tryConsume("login:", login, rateLimit.getLogin(), rejectedByLogin)),
+            tryConsume("address:", address, rateLimit.getAddress(), rejectedByAddress));
+
+        if (retryAfterSeconds > 0) {
+            log.debug("Rejecting authentication attempt from {}, retry after {} seconds", address, retryAfterSeconds);
+            response.setStatus(SC_TOO_MANY_REQUESTS);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+            response.getWriter().write("{\"error\":\"too_many_requests\",\"error_description\":\"Too many authentication attempts\"}");
+            return;
+        }
+        allowed.mark();
+        filterChain.doFilter(request, response);
+
+        if (!failed(response)) {
+            refund("client:", clientId, rateLimit.getClient());
+            refund("login:", login, rateLimit.getLogin());
+        }
+    }
+
+    private long tryConsume(String prefix, String value, IxorTalkProperties.Bucket limit, Meter rejected) {
+        if (!hasText(value)) {
+            return 0;
+        }
+        long retryAfterSeconds = rateLimiter.tryConsume(prefix + value, limit);
+        if (retryAfterSeconds > 0) {
+            rejected.mark();
+        }
+        return retryAfterSeconds;
+    }
+
+    private void refund(String prefix, String value, IxorTalkProperties.Bucket limit) {
+        if (hasText(value)) {
+            rateLimiter.refund(prefix + value, limit);
+        }
+    }
+
+    /**
+     * The token endpoint answers a failed attempt with a client error, the login form redirects back to the login page
+     * with an error parameter.
+     */
+    static boolean failed(HttpServletResponse response) {
+        if (response.getStatus() >= HttpServletResponse.SC_BAD_REQUEST) {
+            return true;
+        }
+        String location = response.getHeader(HttpHeaders.LOCATION);
+        return location != null && UriComponentsBuilder.fromUriString(location).build().getQueryParams().containsKey("error");
+    }
+
+    /**
+     * Walks X-Forwarded-For from the nearest hop back, as long as the hops are trusted proxies.
+     */
+    static String address(HttpServletRequest request, String trustedProxies) {
+        String address = request.getRemoteAddr();
+        String forwardedFor = request.getHeader(X_FORWARDED_FOR);
+        if (!hasText(trustedProxies) || forwardedFor == null) {
+            return address;
+        }
+        Pattern trusted = Pattern.compile(trustedProxies);
+        String[] hops = commaDelimitedListToStringArray(forwardedFor);
+        for (int i = hops.length - 1; i >= 0 && trusted.matcher(address).matches(); i--) {
+            address = hops[i].trim();
+        }
+        return address;
+    }
+
+    private static String login(HttpServletRequest request) {
+        String username = request.getParameter("username");
+        return username == null ? null : username.toLowerCase(Locale.ENGLISH);
+    }
+
+    static String clientId(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(BASIC)) {
+            try {
+                String credentials = new String(Base64.getDecoder().decode(authorization.substring(BASIC.length()).trim()), StandardCharsets.UTF_8);
+                int colon = credentials.indexOf(':');
+                return colon == -1 ? credentials : credentials.substring(0, colon);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return request.getParameter("client_id");
+    }
+}
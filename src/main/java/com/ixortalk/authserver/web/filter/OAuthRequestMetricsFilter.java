@@ -0,0 +1,108 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.filter;
+
+import java.io.IOException;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableSet;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Times requests to the token endpoint per grant type and client, and requests to the check token endpoint.
+ * <p>
+ * Only grant types the server knows and clients that passed client authentication get their own timer, anything else
+ * is recorded as "other" and "unauthenticated", so made up parameters can't flood the registry with timers.
+ * </p>
+ */
+public class OAuthRequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final RequestMatcher TOKEN_REQUESTS = new AntPathRequestMatcher("/oauth/token");
+
+    private static final RequestMatcher CHECK_TOKEN_REQUESTS = new AntPathRequestMatcher("/oauth/check_token");
+
+    private static final Set<String> GRANT_TYPES = ImmutableSet.of("authorization_code", "client_credentials", "implicit", "password", "refresh_token");
+
+    private final MetricRegistry metricRegistry;
+
+    private final Timer checkToken;
+
+    public OAuthRequestMetricsFilter(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        this.checkToken = metricRegistry.timer(name(OAuthRequestMetricsFilter.class, "check-token"));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !TOKEN_REQUESTS.matches(request) && !CHECK_TOKEN_REQUESTS.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (CHECK_TOKEN_REQUESTS.matches(request)) {
+            try (Timer.Context ignored = checkToken.time()) {
+                filterChain.doFilter(request, response);
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            metricRegistry.timer(name(OAuthRequestMetricsFilter.class, "token", grantType(request), client(request, response)))
+                .update(System.nanoTime() - start, NANOSECONDS);
+        }
+    }
+
+    private static String grantType(HttpServletRequest request) {
+        String grantType = request.getParameter("grant_type");
+        return GRANT_TYPES.contains(grantType) ? grantType : "other";
+    }
+
+    /**
+     * Client authentication happens before the grant is checked, so any answer but 401 Unauthorized and 429 Too Many
+     * Requests comes from an authenticated client.
+     */
+    private static String client(HttpServletRequest request, HttpServletResponse response) {
+        int status = response.getStatus();
+        String clientId = AuthenticationRateLimitFilter.clientId(request);
+        if (status == HttpServletResponse.SC_UNAUTHORIZED || status == AuthenticationRateLimitFilter.SC_TOO_MANY_REQUESTS || clientId == null) {
+            return "unauthenticated";
+        }
+        return clientId;
+    }
+}
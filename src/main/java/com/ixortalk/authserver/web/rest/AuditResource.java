@@ -23,13 +23,24 @@
  */
 package com.ixortalk.authserver.web.rest;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import com.ixortalk.authserver.security.AuthoritiesConstants;
+import com.ixortalk.authserver.service.AuditEventExportService;
 import com.ixortalk.authserver.service.AuditEventService;
 import com.ixortalk.authserver.web.rest.util.PaginationUtil;
 import org.springframework.boot.actuate.audit.AuditEvent;
@@ -55,8 +66,28 @@ import org.springframework.web.bind.annotation.RestController;
 @Secured(AuthoritiesConstants.ADMIN)
 public class AuditResource {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+
+    private static final CsvSchema CSV_SCHEMA = CsvSchema.builder()
+        .addColumn("timestamp")
+        .addColumn("principal")
+        .addColumn("type")
+        .addColumn("data")
+        .build()
+        .withHeader();
+
     private AuditEventService auditEventService;
 
+    @Inject
+    private AuditEventExportService auditEventExportService;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
     @Inject
     public AuditResource(AuditEventService auditEventService) {
         this.auditEventService = auditEventService;
@@ -98,6 +129,82 @@ public class AuditResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /audits/export : stream all AuditEvents between the fromDate and toDate as newline delimited JSON.
+     *
+     * @param fromDate the first day of the time period of AuditEvents to export
+     * @param toDate the last day of the time period of AuditEvents to export
+     * @param response the response the AuditEvents are written to
+     * @throws IOException if the response can't be written
+     */
+    @RequestMapping(value = "/export",
+        method = RequestMethod.GET,
+        produces = APPLICATION_NDJSON_VALUE)
+    public void exportAsNdjson(
+        @RequestParam(value = "fromDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+        @RequestParam(value = "toDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+        HttpServletResponse response) throws IOException {
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        try (JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            jsonGenerator.setRootValueSeparator(null);
+            auditEventExportService.exportByDates(fromDate.atStartOfDay(), toDate.plusDays(1).atStartOfDay(), auditEvent -> {
+                try {
+                    jsonGenerator.writeObject(auditEvent);
+                    jsonGenerator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * GET  /audits/export : stream all AuditEvents between the fromDate and toDate as CSV, the event data is written
+     * as name=value pairs separated by semicolons.
+     *
+     * @param fromDate the first day of the time period of AuditEvents to export
+     * @param toDate the last day of the time period of AuditEvents to export
+     * @param response the response the AuditEvents are written to
+     * @throws IOException if the response can't be written
+     */
+    @RequestMapping(value = "/export",
+        method = RequestMethod.GET,
+        produces = TEXT_CSV_VALUE)
+    public void exportAsCsv(
+        @RequestParam(value = "fromDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+        @RequestParam(value = "toDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+        HttpServletResponse response) throws IOException {
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(TEXT_CSV_VALUE);
+        try (SequenceWriter csvWriter = CSV_MAPPER.writer(CSV_SCHEMA).writeValues(response.getOutputStream())) {
+            auditEventExportService.exportByDates(fromDate.atStartOfDay(), toDate.plusDays(1).atStartOfDay(), auditEvent -> {
+                try {
+                    csvWriter.write(new Object[]{
+                        auditEvent.getTimestamp().toInstant().toString(),
+                        auditEvent.getPrincipal(),
+                        auditEvent.getType(),
+                        toCsvData(auditEvent.getData())});
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private static String toCsvData(Map<String, Object> data) {
+        StringBuilder csvData = new StringBuilder();
+        for (Map.Entry<String, Object> entry : new TreeMap<>(data).entrySet()) {
+            if (csvData.length() > 0) {
+                csvData.append(';');
+            }
+            csvData.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return csvData.toString();
+    }
+
     /**
      * GET  /audits/:id : get an AuditEvent by id.
      *
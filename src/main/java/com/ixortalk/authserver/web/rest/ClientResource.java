@@ -26,16 +26,14 @@ package com.ixortalk.authserver.web.rest;
 import java.net.URISyntaxException;
 import java.util.List;
 
-import javax.annotation.PostConstruct;
 import javax.inject.Inject;
-import javax.sql.DataSource;
 
+import com.ixortalk.authserver.security.CachingClientDetailsService;
 import com.ixortalk.authserver.web.rest.dto.CreateClientDTO;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.oauth2.provider.ClientDetails;
 import org.springframework.security.oauth2.provider.client.BaseClientDetails;
-import org.springframework.security.oauth2.provider.client.JdbcClientDetailsService;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -58,14 +56,7 @@ public class ClientResource {
     private static final List<String> SCOPES = newArrayList("openid", "read", "write");
 
     @Inject
-    private DataSource dataSource;
-
-    private JdbcClientDetailsService jdbcClientDetailsService;
-
-    @PostConstruct
-    public void postConstruct() {
-        jdbcClientDetailsService = new JdbcClientDetailsService(dataSource);
-    }
+    private CachingClientDetailsService clientDetailsService;
 
     @RequestMapping(value = "/clients", method = POST, consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
     @Secured(ADMIN)
@@ -74,14 +65,14 @@ public class ClientResource {
         clientDetails.setClientSecret(generatePassword());
         clientDetails.setAccessTokenValiditySeconds(86400);
         clientDetails.setAutoApproveScopes(SCOPES);
-        jdbcClientDetailsService.addClientDetails(clientDetails);
+        clientDetailsService.addClientDetails(clientDetails);
         return ok(clientDetails);
     }
 
     @RequestMapping(value = "/clients/{clientId}", method = DELETE)
     @Secured(ADMIN)
     public ResponseEntity<ClientDetails> delete(@PathVariable String clientId) {
-        jdbcClientDetailsService.removeClientDetails(clientId);
+        clientDetailsService.removeClientDetails(clientId);
         return noContent().build();
     }
 }
@@ -0,0 +1,79 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.rest;
+
+import java.math.BigInteger;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import com.google.common.collect.ImmutableMap;
+import com.ixortalk.authserver.security.token.RotatingJwtAccessTokenConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static java.util.Base64.getUrlEncoder;
+import static java.util.stream.Collectors.toList;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+
+@RestController
+@ConditionalOnProperty("ixortalk.oauth.jwt.enabled")
+public class JwksEndpoint {
+
+    @Inject
+    private RotatingJwtAccessTokenConverter jwtAccessTokenConverter;
+
+    @RequestMapping(value = "/.well-known/jwks.json", method = GET, produces = APPLICATION_JSON_VALUE)
+    public Map<String, List<Map<String, String>>> jwks() {
+        return ImmutableMap.of("keys",
+            jwtAccessTokenConverter.getKeyPairs().entrySet()
+                .stream()
+                .map(keyPair -> jwk(keyPair.getKey(), (RSAPublicKey) keyPair.getValue().getPublic()))
+                .collect(toList()));
+    }
+
+    private static Map<String, String> jwk(String keyId, RSAPublicKey publicKey) {
+        return ImmutableMap.<String, String>builder()
+            .put("kty", "RSA")
+            .put("kid", keyId)
+            .put("use", "sig")
+            .put("alg", "RS256")
+            .put("n", base64UrlUnsigned(publicKey.getModulus()))
+            .put("e", base64UrlUnsigned(publicKey.getPublicExponent()))
+            .build();
+    }
+
+    private static String base64UrlUnsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
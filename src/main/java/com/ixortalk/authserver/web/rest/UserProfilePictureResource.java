@@ -23,29 +23,48 @@
  */
 package com.ixortalk.authserver.web.rest;
 
-import com.amazonaws.services.s3.model.S3Object;
 import com.codahale.metrics.annotation.Timed;
 import com.ixortalk.authserver.config.Constants;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.config.ProfilePictureConfiguration;
 import com.ixortalk.authserver.domain.User;
 import com.ixortalk.authserver.repository.UserRepository;
-import com.ixortalk.aws.s3.library.config.AwsS3Template;
+import com.ixortalk.authserver.service.profilepicture.PresignedProfilePictureUrls;
+import com.ixortalk.authserver.service.profilepicture.PresignedProfilePictureUrls.PresignedUrl;
+import com.ixortalk.authserver.service.profilepicture.ProfilePictureStorage;
+import com.ixortalk.authserver.service.profilepicture.ProfilePictureThumbnails;
+import com.ixortalk.authserver.service.profilepicture.StoredProfilePicture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptorAdapter;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.inject.Inject;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 
-import static com.amazonaws.util.IOUtils.toByteArray;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.springframework.http.HttpStatus.FOUND;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 import static org.springframework.http.MediaType.valueOf;
 import static org.springframework.http.ResponseEntity.notFound;
 import static org.springframework.http.ResponseEntity.ok;
+import static org.springframework.http.ResponseEntity.status;
 
 /**
  * REST controller for managing users.
@@ -73,47 +92,139 @@ import static org.springframework.http.ResponseEntity.ok;
  */
 @RestController
 @RequestMapping("/api")
-@ConditionalOnProperty({"com.ixortalk.s3.default-bucket"})
+@Conditional(ProfilePictureConfiguration.OnProfilePictureStorage.class)
 public class UserProfilePictureResource {
 
     private final Logger log = LoggerFactory.getLogger(UserProfilePictureResource.class);
 
+    /**
+     * Profile picture keys are never reused, a new picture always gets a new key.
+     */
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, DAYS).cachePublic();
+
+    /**
+     * The picture behind a login changes with every upload, so it has to be revalidated on every use.
+     */
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
     @Inject
     private UserRepository userRepository;
 
     @Inject
-    private AwsS3Template awsS3Template;
+    private ProfilePictureStorage profilePictureStorage;
+
+    @Inject
+    private ProfilePictureThumbnails profilePictureThumbnails;
+
+    @Autowired(required = false)
+    private PresignedProfilePictureUrls presignedProfilePictureUrls;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
 
     @RequestMapping(value = "/users/{login:" + Constants.LOGIN_REGEX + "}/profile-picture", method = RequestMethod.GET)
     @Timed
-    public ResponseEntity<?> getProfilePictureByLogin(@PathVariable String login) {
+    public ResponseEntity<StreamingResponseBody> getProfilePictureByLogin(@PathVariable String login, @RequestParam(required = false) Integer size, @RequestHeader HttpHeaders headers, NativeWebRequest request) {
         log.debug("REST request to get User Profile Picture by login : {}", login);
-        return getProfilePicture(userRepository.findOneByLogin(login));
+        return getProfilePicture(userRepository.findOneByLogin(login), size, headers, REVALIDATE, request);
     }
 
     @RequestMapping(value = "/profile-pictures/{profilePictureKey}", method = RequestMethod.GET)
     @Timed
-    public ResponseEntity<?> getProfilePictureByKey(@PathVariable String profilePictureKey) {
+    public ResponseEntity<StreamingResponseBody> getProfilePictureByKey(@PathVariable String profilePictureKey, @RequestParam(required = false) Integer size, @RequestHeader HttpHeaders headers, NativeWebRequest request) {
         log.debug("REST request to get User Profile Picture by key : {}", profilePictureKey);
-        return getProfilePicture(userRepository.findOneByProfilePictureKey(profilePictureKey));
+        return getProfilePicture(userRepository.findOneByProfilePictureKey(profilePictureKey), size, headers, IMMUTABLE, request);
     }
 
-    private ResponseEntity<?> getProfilePicture(Optional<User> optionalUser) {
+    /**
+     * With a size, the nearest thumbnail is returned. A picture without that thumbnail yet is returned in its original
+     * size, to be revalidated so the thumbnail replaces it once it is there.
+     */
+    private ResponseEntity<StreamingResponseBody> getProfilePicture(Optional<User> optionalUser, Integer size, HttpHeaders headers, CacheControl cacheControl, NativeWebRequest request) {
         return optionalUser
-            .map(user -> {
+            .map(User::getProfilePictureKey)
+            .<ResponseEntity<StreamingResponseBody>>flatMap(profilePictureKey -> {
                 try {
-                    S3Object s3Object = awsS3Template.get(user.getProfilePictureKey());
-                    return ok()
-                        .contentType(valueOf(s3Object.getObjectMetadata().getContentType()))
-                        .body(toByteArray(s3Object.getObjectContent()));
+                    if (size == null) {
+                        return getPicture(profilePictureKey, headers, cacheControl, request);
+                    }
+                    Optional<ResponseEntity<StreamingResponseBody>> thumbnail = getPicture(profilePictureThumbnails.thumbnailKey(profilePictureKey, size), headers, cacheControl, request);
+                    return thumbnail.isPresent() ? thumbnail : getPicture(profilePictureKey, headers, REVALIDATE, request);
                 } catch (Exception e) {
                     log.error("Error retrieving profile picture: " + e.getMessage(), e);
-                    return notFound().build();
+                    return Optional.empty();
                 }
             })
             .orElse(notFound().build());
     }
 
+    /**
+     * The picture is tagged with its key, a client already holding that key gets 304 Not Modified without the picture
+     * being fetched. In redirect mode the client is sent to a presigned S3 URL instead. Otherwise the picture is streamed
+     * from storage to the client on an async request thread. Empty when storage does not hold the picture.
+     */
+    private Optional<ResponseEntity<StreamingResponseBody>> getPicture(String key, HttpHeaders headers, CacheControl cacheControl, NativeWebRequest request) throws IOException, URISyntaxException {
+        String eTag = eTag(key);
+        if (headers.getIfNoneMatch().contains(eTag) || headers.getIfNoneMatch().contains("*")) {
+            return Optional.of(status(NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build());
+        }
+
+        if (presignedProfilePictureUrls != null && ixorTalkProperties.getProfilePicture().getRedirect().isEnabled()) {
+            Optional<PresignedUrl> presignedUrl = presignedProfilePictureUrls.getIfExists(key);
+            if (!presignedUrl.isPresent()) {
+                return Optional.empty();
+            }
+            return Optional.of(redirect(presignedUrl.get(), cacheControl));
+        }
+
+        Optional<StoredProfilePicture> stored = profilePictureStorage.get(key);
+        if (!stored.isPresent()) {
+            return Optional.empty();
+        }
+        StoredProfilePicture picture = stored.get();
+        try {
+            ResponseEntity.BodyBuilder response = ok()
+                .contentType(valueOf(picture.getContentType()))
+                .eTag(eTag)
+                .cacheControl(cacheControl);
+            if (picture.getContentLength() > 0) {
+                response.contentLength(picture.getContentLength());
+            }
+            closeOnCompletion(picture, request);
+            return Optional.of(response.body(picture::transferTo));
+        } catch (IOException | RuntimeException e) {
+            picture.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The picture is closed once the async request is over, also when it times out or fails before the body gets
+     * written.
+     */
+    private static void closeOnCompletion(StoredProfilePicture picture, NativeWebRequest request) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(picture, new CallableProcessingInterceptorAdapter() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) throws Exception {
+                picture.close();
+            }
+        });
+    }
+
+    /**
+     * A redirect for an immutable picture can be cached for as long as its URL is handed out here.
+     */
+    private static ResponseEntity<StreamingResponseBody> redirect(PresignedUrl presignedUrl, CacheControl cacheControl) throws URISyntaxException {
+        return status(FOUND)
+            .location(presignedUrl.getUrl().toURI())
+            .cacheControl(cacheControl == IMMUTABLE ? CacheControl.maxAge(presignedUrl.getMaxAgeSeconds(), SECONDS).cachePrivate() : cacheControl)
+            .build();
+    }
+
+    private static String eTag(String profilePictureKey) {
+        return "\"" + profilePictureKey + "\"";
+    }
+
 
     @RequestMapping(value = "/users/{login:" + Constants.LOGIN_REGEX + "}/profile-picture", method = RequestMethod.POST)
     @Timed
@@ -124,7 +235,8 @@ public class UserProfilePictureResource {
             .map(User::generateProfilePictureKey)
             .map(user -> {
                 try {
-                    awsS3Template.save(user.getProfilePictureKey(), uploadedFileRef);
+                    profilePictureStorage.save(user.getProfilePictureKey(), uploadedFileRef);
+                    profilePictureThumbnails.generate(user.getProfilePictureKey(), uploadedFileRef);
                 } catch (Exception e) {
                     log.error("Error setting profile picture: " + e.getMessage(), e);
                     return notFound().build();
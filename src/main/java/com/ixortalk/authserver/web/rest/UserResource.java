@@ -24,15 +24,21 @@
 package com.ixortalk.authserver.web.rest;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import com.ixortalk.authserver.config.Constants;
-import com.ixortalk.authserver.domain.Authority;
+import com.ixortalk.authserver.config.IxorTalkProperties;
 import com.ixortalk.authserver.domain.User;
-import com.ixortalk.authserver.repository.AuthorityRepository;
 import com.ixortalk.authserver.repository.UserRepository;
 import com.ixortalk.authserver.security.AuthoritiesConstants;
 import com.ixortalk.authserver.service.MailService;
+import com.ixortalk.authserver.service.UserImportService;
 import com.ixortalk.authserver.service.UserService;
 import com.ixortalk.authserver.web.rest.dto.ManagedUserDTO;
+import com.ixortalk.authserver.web.rest.dto.UserImportResultDTO;
 import com.ixortalk.authserver.web.rest.util.HeaderUtil;
 import com.ixortalk.authserver.web.rest.util.PaginationUtil;
 import org.slf4j.Logger;
@@ -49,11 +55,13 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 import static java.util.Optional.ofNullable;
@@ -89,6 +97,16 @@ public class UserResource {
 
     private final Logger log = LoggerFactory.getLogger(UserResource.class);
 
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType(TEXT_CSV_VALUE);
+
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+
+    private static final CsvSchema CSV_SCHEMA = CsvSchema.emptySchema().withHeader().withArrayElementSeparator(";");
+
     @Inject
     private UserRepository userRepository;
 
@@ -96,10 +114,16 @@ public class UserResource {
     private MailService mailService;
 
     @Inject
-    private AuthorityRepository authorityRepository;
+    private UserService userService;
 
     @Inject
-    private UserService userService;
+    private UserImportService userImportService;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
 
     /**
      * POST  /users  : Creates a new user.
@@ -117,6 +141,7 @@ public class UserResource {
         method = RequestMethod.POST,
         produces = MediaType.APPLICATION_JSON_VALUE)
     @Timed
+    @Transactional
     @Secured(AuthoritiesConstants.ADMIN)
     public ResponseEntity<?> createUser(@RequestBody ManagedUserDTO managedUserDTO) throws URISyntaxException {
         log.debug("REST request to save User : {}", managedUserDTO);
@@ -166,17 +191,7 @@ public class UserResource {
         return userRepository
             .findOneById(managedUserDTO.getId())
             .map(user -> {
-                user.setLogin(managedUserDTO.getLogin());
-                user.setFirstName(managedUserDTO.getFirstName());
-                user.setLastName(managedUserDTO.getLastName());
-                user.setEmail(managedUserDTO.getEmail());
-                user.setActivated(managedUserDTO.isActivated());
-                user.setLangKey(managedUserDTO.getLangKey());
-                Set<Authority> authorities = user.getAuthorities();
-                authorities.clear();
-                managedUserDTO.getAuthorities().stream().forEach(
-                    authority -> authorities.add(authorityRepository.findOne(authority))
-                );
+                userService.updateUser(user, managedUserDTO);
                 return ResponseEntity.ok()
                     .headers(HeaderUtil.createAlert("userManagement.updated", managedUserDTO.getLogin()))
                     .body(new ManagedUserDTO(userRepository.findOne(managedUserDTO.getId()), userService.constructProfilePictureUrl(user)));
@@ -218,6 +233,58 @@ public class UserResource {
                 .orElse((ResponseEntity<ManagedUserDTO>) createUser(managedUserDTO));
     }
 
+    /**
+     * POST /users/import/bulk : Registers or updates all users of a JSON array or a CSV file
+     * <p>
+     * Every row follows the rules of {@link #importUser}. The body is read while importing, and the result of each
+     * row is streamed back as soon as the chunk it belongs to is committed, so imports of any size can be sent in
+     * one request. CSV files need a header row naming the {@link ManagedUserDTO} properties, authorities are
+     * separated by a semicolon.
+     * </p>
+     * <p>
+     * A row that doesn't map onto a user fails as "unparseable". When the body itself is malformed the import stops
+     * at that row, which is reported as "unparseable", and the JSON array of results is left open.
+     * </p>
+     *
+     * @param request the HTTP request, holding the users to import
+     * @param response the HTTP response, receiving a JSON array with a {@link UserImportResultDTO} per row
+     * @throws IOException if the request can't be read or the response can't be written
+     */
+    @RequestMapping(value = "/users/import/bulk",
+        method = RequestMethod.POST,
+        consumes = {MediaType.APPLICATION_JSON_VALUE, TEXT_CSV_VALUE},
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("REST request to bulk import Users");
+
+        MappingIterator<ManagedUserDTO> users = TEXT_CSV.includes(MediaType.parseMediaType(request.getContentType())) ?
+            CSV_MAPPER.readerFor(ManagedUserDTO.class).with(CSV_SCHEMA).readValues(request.getInputStream()) :
+            objectMapper.readerFor(ManagedUserDTO.class).readValues(request.getInputStream());
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            // A broken input leaves the array open, so clients don't mistake the results for the complete import
+            jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            jsonGenerator.writeStartArray();
+            boolean complete = userImportService.importUsers(users, results -> {
+                try {
+                    for (UserImportResultDTO result : results) {
+                        jsonGenerator.writeObject(result);
+                    }
+                    jsonGenerator.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (complete) {
+                jsonGenerator.writeEndArray();
+            }
+        }
+    }
+
     /**
      * GET  /users : get all users.
      *
@@ -234,6 +301,7 @@ public class UserResource {
     public ResponseEntity<List<ManagedUserDTO>> getAllUsers(Pageable pageable)
         throws URISyntaxException {
         Page<User> page = userRepository.findAll(pageable);
+        userService.fetchAuthorities(page.getContent());
         List<ManagedUserDTO> managedUserDTOs = page.getContent().stream()
             .map(user -> new ManagedUserDTO(user, userService.constructProfilePictureUrl(user)))
             .collect(Collectors.toList());
@@ -241,6 +309,72 @@ public class UserResource {
         return new ResponseEntity<>(managedUserDTOs, headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /users?afterId=:afterId : get the users with an id greater than "afterId", in id order.
+     * <p>
+     * Unlike {@link #getAllUsers}, the cost of a page doesn't grow with its offset, so this is the way to page
+     * through all users. Start with an "afterId" of 0 and follow the "next" link until there is none.
+     * </p>
+     *
+     * @param afterId the id of the last user of the previous page
+     * @param size the maximum number of users to return
+     * @return the ResponseEntity with status 200 (OK) and with body the users of the page
+     * @throws URISyntaxException if the pagination headers couldnt be generated
+     */
+    @RequestMapping(value = "/users",
+        method = RequestMethod.GET,
+        params = "afterId",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public ResponseEntity<List<ManagedUserDTO>> getUsersAfter(@RequestParam Long afterId, @RequestParam(defaultValue = "20") int size)
+        throws URISyntaxException {
+        if (size < 1) {
+            return badRequest().build();
+        }
+        size = Math.min(size, ixorTalkProperties.getUserExport().getMaxPageSize());
+        List<ManagedUserDTO> managedUserDTOs = userService.getUsersAfter(afterId, size);
+        Long lastId = managedUserDTOs.isEmpty() ? afterId : managedUserDTOs.get(managedUserDTOs.size() - 1).getId();
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(managedUserDTOs, size, lastId, "/api/users");
+        return new ResponseEntity<>(managedUserDTOs, headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /users : export all users as newline delimited JSON.
+     * <p>
+     * Users are read in chunks and every chunk is flushed to the client before the next one is loaded, so the whole
+     * user base can be exported with constant memory.
+     * </p>
+     *
+     * @param response the HTTP response, receiving a {@link ManagedUserDTO} per line
+     * @throws IOException if the response can't be written
+     */
+    @RequestMapping(value = "/users",
+        method = RequestMethod.GET,
+        produces = APPLICATION_NDJSON_VALUE)
+    @Timed
+    @Secured(AuthoritiesConstants.ADMIN)
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        log.debug("REST request to export all Users");
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        try (JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            jsonGenerator.setRootValueSeparator(null);
+            userService.exportUsers(ixorTalkProperties.getUserExport().getChunkSize(), users -> {
+                try {
+                    for (ManagedUserDTO user : users) {
+                        jsonGenerator.writeObject(user);
+                        jsonGenerator.writeRaw('\n');
+                    }
+                    jsonGenerator.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
     /**
      * GET  /users/:login : get the "login" user.
      *
@@ -0,0 +1,109 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.rest.dto;
+
+/**
+ * Outcome of importing one row of a bulk user import.
+ */
+public class UserImportResultDTO {
+
+    public enum Status {
+        CREATED, UPDATED, FAILED
+    }
+
+    private int row;
+
+    private String login;
+
+    private Status status;
+
+    private String error;
+
+    private String field;
+
+    public UserImportResultDTO() {
+    }
+
+    public UserImportResultDTO(int row, String login, Status status, String error) {
+        this(row, login, status, error, null);
+    }
+
+    public UserImportResultDTO(int row, String login, Status status, String error, String field) {
+        this.row = row;
+        this.login = login;
+        this.status = status;
+        this.error = error;
+        this.field = field;
+    }
+
+    public static UserImportResultDTO created(int row, String login) {
+        return new UserImportResultDTO(row, login, Status.CREATED, null);
+    }
+
+    public static UserImportResultDTO updated(int row, String login) {
+        return new UserImportResultDTO(row, login, Status.UPDATED, null);
+    }
+
+    public static UserImportResultDTO failed(int row, String login, String error) {
+        return new UserImportResultDTO(row, login, Status.FAILED, error);
+    }
+
+    public static UserImportResultDTO invalid(int row, String login, String field) {
+        return new UserImportResultDTO(row, login, Status.FAILED, "invalid", field);
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * The property that failed validation, when the error is {@code invalid}.
+     */
+    public String getField() {
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return "UserImportResultDTO{" +
+            "row=" + row +
+            ", login='" + login + "'" +
+            ", status=" + status +
+            ", error='" + error + "'" +
+            ", field='" + field + "'" +
+            "}";
+    }
+}
@@ -28,6 +28,7 @@ import org.springframework.http.HttpHeaders;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 
 /**
  * Utility class for handling pagination.
@@ -85,4 +86,14 @@ public class PaginationUtil {
         headers.add(HttpHeaders.LINK, link);
         return headers;
     }
+
+    public static HttpHeaders generateKeysetPaginationHttpHeaders(List<?> page, int size, Long lastId, String baseUrl)
+        throws URISyntaxException {
+
+        HttpHeaders headers = new HttpHeaders();
+        if (page.size() == size) {
+            headers.add(HttpHeaders.LINK, "<" + (new URI(baseUrl + "?afterId=" + lastId + "&size=" + size)).toString() + ">; rel=\"next\"");
+        }
+        return headers;
+    }
 }
@@ -0,0 +1,99 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.security.UserDetailsService;
+import com.ixortalk.authserver.service.UserService;
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.cache.use_second_level_cache: true",
+    "spring.jpa.properties.hibernate.cache.use_query_cache: true"
+})
+public class HibernateSecondLevelCacheIntTest extends AbstractSpringIntegrationTest {
+
+    @Inject
+    private UserDetailsService userDetailsService;
+
+    @Inject
+    private UserService userService;
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private Statistics statistics;
+
+    @Before
+    public void before() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        userDetailsService.loadUserByUsername("user");
+        userService.getUserWithAuthoritiesByLogin("user");
+        statistics.clear();
+    }
+
+    @Test
+    public void loadUserByUsernameIsNeverCached() {
+        userDetailsService.loadUserByUsername("user");
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(0);
+        assertThat(statistics.getQueryCachePutCount()).isEqualTo(0);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void getUserWithAuthoritiesByLoginIsServedFromSecondLevelCache() {
+        userService.getUserWithAuthoritiesByLogin("user");
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(0);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getSecondLevelCacheStatistics(User.class.getName()).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getSecondLevelCacheStatistics(User.class.getName() + ".authorities").getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void regionStatisticsArePublished() {
+        userService.getUserWithAuthoritiesByLogin("user");
+
+        assertThat(metricRegistry.getGauges().get("hibernate.cache." + User.class.getName() + ".hits").getValue()).isEqualTo(1L);
+        assertThat(metricRegistry.getGauges()).containsKey("hibernate.cache." + User.class.getName() + ".authorities.misses");
+        assertThat(((Gauge<?>) metricRegistry.getGauges().get("hibernate.query-cache.hits")).getValue()).isEqualTo(1L);
+    }
+}
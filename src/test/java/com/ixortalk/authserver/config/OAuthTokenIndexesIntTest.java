@@ -0,0 +1,81 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config;
+
+import javax.inject.Inject;
+
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OAuthTokenIndexesIntTest extends AbstractSpringIntegrationTest {
+
+    private static final String TABLE_SCAN = "tableScan";
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void readAccessTokenUsesTokenIdIndex() {
+        assertThat(explain("select token_id, token from oauth_access_token where token_id = 'x'"))
+            .containsIgnoringCase("idx_oauth_access_token_token_id");
+    }
+
+    @Test
+    public void findTokensByClientIdAndUserNameUsesUserNameClientIdIndex() {
+        assertThat(explain("select token_id, token from oauth_access_token where user_name = 'x' and client_id = 'y'"))
+            .containsIgnoringCase("idx_oauth_access_token_user_name_client_id");
+    }
+
+    @Test
+    public void findTokensByClientIdUsesClientIdIndex() {
+        assertThat(explain("select token_id, token from oauth_access_token where client_id = 'x'"))
+            .containsIgnoringCase("idx_oauth_access_token_client_id");
+    }
+
+    @Test
+    public void deleteUserInformationUsesUserNameIndex() {
+        assertThat(explain("delete from oauth_access_token where user_name = 'x'"))
+            .doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    public void removeAccessTokenUsingRefreshTokenUsesRefreshTokenIndex() {
+        assertThat(explain("delete from oauth_access_token where refresh_token = 'x'"))
+            .containsIgnoringCase("idx_oauth_access_token_refresh_token");
+    }
+
+    @Test
+    public void readRefreshTokenUsesPrimaryKey() {
+        assertThat(explain("select token_id, token from oauth_refresh_token where token_id = 'x'"))
+            .doesNotContain(TABLE_SCAN)
+            .contains("TOKEN_ID = 'x' */");
+    }
+
+    private String explain(String query) {
+        return jdbcTemplate.queryForObject("explain " + query, String.class);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.security.UserDetailsService;
+import com.ixortalk.authserver.security.token.MeteredTokenStore;
+import com.ixortalk.authserver.web.filter.OAuthRequestMetricsFilter;
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import com.jayway.restassured.response.Response;
+import io.prometheus.client.dropwizard.DropwizardExports;
+import io.prometheus.client.exporter.common.TextFormat;
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.jayway.awaitility.Awaitility.await;
+import static com.jayway.restassured.RestAssured.given;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.util.Collections.enumeration;
+import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrometheusMetricsIntTest extends AbstractSpringIntegrationTest {
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private DropwizardExports dropwizardExports;
+
+    @Test
+    public void tokenRequestsAreTimedPerGrantTypeAndClient() {
+        passwordGrant("clientAdminSecret").then().statusCode(HTTP_OK);
+
+        awaitTimed(name(OAuthRequestMetricsFilter.class, "token", "password", "clientAdmin"));
+        assertThat(metricRegistry.timer(name(UserDetailsService.class, "loadUserByUsername")).getCount()).isGreaterThanOrEqualTo(1);
+        assertThat(metricRegistry.timer(name(BCryptPasswordEncoder.class, "matches")).getCount()).isGreaterThanOrEqualTo(1);
+        assertThat(metricRegistry.timer(name(MeteredTokenStore.class, "storeAccessToken")).getCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void unauthenticatedClientsShareOneTimer() {
+        passwordGrant("wrong").then().statusCode(HTTP_UNAUTHORIZED);
+
+        awaitTimed(name(OAuthRequestMetricsFilter.class, "token", "password", "unauthenticated"));
+    }
+
+    @Test
+    public void dropwizardMetricsAreExposedToPrometheus() throws IOException {
+        passwordGrant("clientAdminSecret").then().statusCode(HTTP_OK);
+        awaitTimed(name(OAuthRequestMetricsFilter.class, "token", "password", "clientAdmin"));
+
+        StringWriter exposition = new StringWriter();
+        TextFormat.write004(exposition, enumeration(dropwizardExports.collect()));
+
+        assertThat(exposition.toString())
+            .contains("com_ixortalk_authserver_web_filter_OAuthRequestMetricsFilter_token_password_clientAdmin{quantile=\"0.99\",}")
+            .contains("com_ixortalk_authserver_security_token_MeteredTokenStore_storeAccessToken_count");
+    }
+
+    /**
+     * The filter stops its timer after the response has been sent, so the client may see the response first.
+     */
+    private void awaitTimed(String timerName) {
+        await().atMost(5, SECONDS).until(() -> metricRegistry.timer(timerName).getCount() > 0);
+    }
+
+    private static Response passwordGrant(String clientSecret) {
+        return given()
+            .formParam("grant_type", "password")
+            .formParam("username", "user")
+            .formParam("password", "user")
+            .formParam("client_id", "clientAdmin")
+            .formParam("client_secret", clientSecret)
+            .when()
+            .post("/oauth/token");
+    }
+}
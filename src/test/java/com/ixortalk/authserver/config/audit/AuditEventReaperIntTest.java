@@ -0,0 +1,134 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config.audit;
+
+import java.time.LocalDateTime;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.domain.PersistentAuditEvent;
+import com.ixortalk.authserver.repository.PersistenceAuditEventRepository;
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+    "ixortalk.audit.retention.enabled: true",
+    "ixortalk.audit.retention.max-age-days: 30",
+    "ixortalk.audit.retention.max-age-days-by-type.AUTHENTICATION_FAILURE: 90",
+    "ixortalk.audit.retention.chunk-size: 2",
+    "ixortalk.audit.retention.pause-millis: 0"
+})
+public class AuditEventReaperIntTest extends AbstractSpringIntegrationTest {
+
+    private static final String PRINCIPAL = "audit-reaper-test";
+
+    @Inject
+    private AuditEventReaper auditEventReaper;
+
+    @Inject
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Before
+    public void clearTables() {
+        jdbcTemplate.update("delete from jhi_persistent_audit_evt_data");
+        jdbcTemplate.update("delete from jhi_persistent_audit_event");
+    }
+
+    @Test
+    public void removeExpiredEvents() {
+        for (int i = 0; i < 5; i++) {
+            saveEvent("AUTHENTICATION_SUCCESS", 60);
+            saveEvent("AUTHENTICATION_SUCCESS", 10);
+        }
+        saveEvent("AUTHENTICATION_FAILURE", 60);
+        saveEvent("AUTHENTICATION_FAILURE", 120);
+        long deletedBefore = metricRegistry.counter(name(AuditEventReaper.class, "deleted")).getCount();
+
+        auditEventReaper.removeExpiredEvents();
+
+        assertThat(countEvents("AUTHENTICATION_SUCCESS")).isEqualTo(5);
+        assertThat(countEvents("AUTHENTICATION_FAILURE")).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from jhi_persistent_audit_evt_data", Integer.class)).isEqualTo(6);
+        assertThat(metricRegistry.counter(name(AuditEventReaper.class, "deleted")).getCount()).isEqualTo(deletedBefore + 6);
+    }
+
+    @Test
+    public void eventsWithinRetentionPeriodAreKept() {
+        saveEvent("AUTHENTICATION_SUCCESS", 10);
+        saveEvent("AUTHENTICATION_FAILURE", 60);
+
+        auditEventReaper.removeExpiredEvents();
+
+        assertThat(persistenceAuditEventRepository.findByPrincipal(PRINCIPAL)).hasSize(2);
+    }
+
+    @Test
+    public void nothingIsDeletedWhenDisabled() {
+        saveEvent("AUTHENTICATION_SUCCESS", 1000);
+        ixorTalkProperties.getAudit().getRetention().setEnabled(false);
+        try {
+            auditEventReaper.removeExpiredEvents();
+        } finally {
+            ixorTalkProperties.getAudit().getRetention().setEnabled(true);
+        }
+
+        assertThat(persistenceAuditEventRepository.findByPrincipal(PRINCIPAL)).hasSize(1);
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertThat(new IxorTalkProperties.Retention().isEnabled()).isFalse();
+    }
+
+    private void saveEvent(String type, int ageDays) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(PRINCIPAL);
+        event.setAuditEventType(type);
+        event.setAuditEventDate(LocalDateTime.now().minusDays(ageDays));
+        event.setData(singletonMap("remoteAddress", "127.0.0.1"));
+        persistenceAuditEventRepository.save(event);
+    }
+
+    private int countEvents(String type) {
+        return jdbcTemplate.queryForObject("select count(*) from jhi_persistent_audit_event where event_type = ?", Integer.class, type);
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config.audit;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.repository.CustomAuditEventRepository;
+import com.ixortalk.authserver.repository.PersistenceAuditEventRepository;
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.ixortalk.authserver.config.IxorTalkProperties.AuditWriter.OverflowPolicy.DROP;
+import static com.ixortalk.authserver.config.IxorTalkProperties.AuditWriter.OverflowPolicy.WRITE_SYNCHRONOUSLY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+    "ixortalk.audit.writer.enabled: true",
+    "ixortalk.audit.writer.queue-capacity: 3",
+    "ixortalk.audit.writer.batch-size: 2"
+})
+public class AuditEventWriterIntTest extends AbstractSpringIntegrationTest {
+
+    private static final String PRINCIPAL = "audit-writer-test";
+
+    @Inject
+    private AuditEventWriter auditEventWriter;
+
+    @Inject
+    private CustomAuditEventRepository customAuditEventRepository;
+
+    @Inject
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Before
+    @After
+    public void cleanUp() {
+        auditEventWriter.flush();
+        persistenceAuditEventRepository.delete(persistenceAuditEventRepository.findByPrincipal(PRINCIPAL));
+        ixorTalkProperties.getAudit().getWriter().setOverflowPolicy(WRITE_SYNCHRONOUSLY);
+    }
+
+    @Test
+    public void eventsAreWrittenOnFlush() {
+        addEvents(3);
+
+        assertThat(writtenEvents()).isEqualTo(0);
+        assertThat(queueDepth()).isEqualTo(3);
+
+        auditEventWriter.flush();
+
+        assertThat(writtenEvents()).isEqualTo(3);
+        assertThat(queueDepth()).isEqualTo(0);
+    }
+
+    @Test
+    public void overflowIsWrittenSynchronously() {
+        addEvents(4);
+
+        assertThat(writtenEvents()).isEqualTo(1);
+
+        auditEventWriter.flush();
+
+        assertThat(writtenEvents()).isEqualTo(4);
+    }
+
+    @Test
+    public void overflowIsDropped() {
+        ixorTalkProperties.getAudit().getWriter().setOverflowPolicy(DROP);
+        long droppedBefore = metricRegistry.counter(name(AuditEventWriter.class, "dropped")).getCount();
+
+        addEvents(4);
+        auditEventWriter.flush();
+
+        assertThat(writtenEvents()).isEqualTo(3);
+        assertThat(metricRegistry.counter(name(AuditEventWriter.class, "dropped")).getCount()).isEqualTo(droppedBefore + 1);
+    }
+
+    @Test
+    public void queueIsDrainedOnShutdown() {
+        addEvents(2);
+
+        auditEventWriter.destroy();
+
+        assertThat(writtenEvents()).isEqualTo(2);
+    }
+
+    private void addEvents(int count) {
+        for (int i = 0; i < count; i++) {
+            customAuditEventRepository.add(new AuditEvent(PRINCIPAL, "AUTHENTICATION_SUCCESS", "index=" + i));
+        }
+    }
+
+    private int writtenEvents() {
+        return persistenceAuditEventRepository.findByPrincipal(PRINCIPAL).size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private int queueDepth() {
+        return ((Gauge<Integer>) metricRegistry.getGauges().get(name(AuditEventWriter.class, "queue-depth"))).getValue();
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.config.JHipsterProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the MeteredCaffeineCacheManager.
+ *
+ * @see MeteredCaffeineCacheManager
+ */
+public class MeteredCaffeineCacheManagerUnitTest {
+
+    private JHipsterProperties.Cache cacheProperties = new JHipsterProperties.Cache();
+
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    private MeteredCaffeineCacheManager cacheManager;
+
+    @Before
+    public void before() {
+        JHipsterProperties.Cache.CacheSpec small = new JHipsterProperties.Cache.CacheSpec();
+        small.setMaximumSize(1L);
+        cacheProperties.getCaches().put("small", small);
+        cacheManager = new MeteredCaffeineCacheManager(cacheProperties, metricRegistry);
+    }
+
+    @Test
+    public void cachesAreCreatedOnDemand() {
+        Cache cache = cacheManager.getCache("users");
+
+        cache.put("key", "value");
+
+        assertThat(cache.get("key").get()).isEqualTo("value");
+        assertThat(cacheManager.getCacheNames()).containsOnly("users");
+    }
+
+    @Test
+    public void perCacheMaximumSize() {
+        com.github.benmanes.caffeine.cache.Cache<?, ?> small = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache("small").getNativeCache();
+        com.github.benmanes.caffeine.cache.Cache<?, ?> other = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cacheManager.getCache("other").getNativeCache();
+
+        assertThat(small.policy().eviction().get().getMaximum()).isEqualTo(1L);
+        assertThat(other.policy().eviction().get().getMaximum()).isEqualTo(cacheProperties.getMaximumSize());
+    }
+
+    @Test
+    public void statisticsArePublished() {
+        Cache cache = cacheManager.getCache("users");
+        cache.put("key", "value");
+
+        cache.get("key");
+        cache.get("key");
+        cache.get("missing");
+
+        assertThat(gauge("cache.users.hits").getValue()).isEqualTo(2L);
+        assertThat(gauge("cache.users.misses").getValue()).isEqualTo(1L);
+        assertThat(gauge("cache.users.size").getValue()).isEqualTo(1L);
+    }
+
+    private Gauge<?> gauge(String name) {
+        return metricRegistry.getGauges().get(name);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.config.liquibase;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import javax.inject.Inject;
+import javax.sql.DataSource;
+
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.common.DefaultExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.util.SerializationUtils;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OAuthTokenExpirationBackfillIntTest extends AbstractSpringIntegrationTest {
+
+    private static final Date EXPIRATION = new Date(currentTimeMillis() - HOURS.toMillis(1));
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void clearTables() {
+        jdbcTemplate.update("delete from oauth_access_token");
+        jdbcTemplate.update("delete from oauth_refresh_token");
+    }
+
+    @Test
+    public void fillsInTheExpirationOfExistingTokens() throws Exception {
+        DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken("access");
+        accessToken.setExpiration(EXPIRATION);
+        insertAccessToken("expiring", SerializationUtils.serialize(accessToken));
+        insertAccessToken("never-expiring", SerializationUtils.serialize(new DefaultOAuth2AccessToken("never-expiring")));
+        insertAccessToken("unreadable", new byte[]{1, 2, 3});
+        insertAccessToken("z-expiring", SerializationUtils.serialize(accessToken));
+        insertRefreshToken("expiring", SerializationUtils.serialize(new DefaultExpiringOAuth2RefreshToken("refresh", EXPIRATION)));
+        insertRefreshToken("never-expiring", SerializationUtils.serialize(new DefaultOAuth2RefreshToken("never-expiring")));
+
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            // chunks of two, so the access tokens take more than one
+            new OAuthTokenExpirationBackfill(2).execute(database);
+        }
+
+        assertThat(jdbcTemplate.queryForList("select token_id from oauth_access_token", String.class)).containsOnly("expiring", "never-expiring", "z-expiring");
+        assertThat(expiration("oauth_access_token", "expiring")).isEqualTo(new Timestamp(EXPIRATION.getTime()));
+        assertThat(expiration("oauth_access_token", "z-expiring")).isEqualTo(new Timestamp(EXPIRATION.getTime()));
+        assertThat(expiration("oauth_access_token", "never-expiring")).isNull();
+        assertThat(expiration("oauth_refresh_token", "expiring")).isEqualTo(new Timestamp(EXPIRATION.getTime()));
+        assertThat(expiration("oauth_refresh_token", "never-expiring")).isNull();
+    }
+
+    private void insertAccessToken(String tokenId, byte[] token) {
+        jdbcTemplate.update("insert into oauth_access_token (token_id, token, authentication_id, client_id) values (?, ?, ?, 'client')", tokenId, token, tokenId);
+    }
+
+    private void insertRefreshToken(String tokenId, byte[] token) {
+        jdbcTemplate.update("insert into oauth_refresh_token (token_id, token) values (?, ?)", tokenId, token);
+    }
+
+    private Timestamp expiration(String tableName, String tokenId) {
+        return jdbcTemplate.queryForObject("select expiration from " + tableName + " where token_id = ?", Timestamp.class, tokenId);
+    }
+}
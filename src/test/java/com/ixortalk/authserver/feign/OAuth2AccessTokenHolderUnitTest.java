@@ -0,0 +1,136 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.feign;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Test class for the OAuth2AccessTokenHolder.
+ *
+ * @see OAuth2AccessTokenHolder
+ */
+public class OAuth2AccessTokenHolderUnitTest {
+
+    private static final int REFRESH_MARGIN_SECONDS = 30;
+
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    private AtomicInteger requestedTokens = new AtomicInteger();
+
+    @Test
+    public void tokenIsReused() {
+        OAuth2AccessTokenHolder holder = new OAuth2AccessTokenHolder(tokensExpiringIn(3600), REFRESH_MARGIN_SECONDS, metricRegistry);
+
+        OAuth2AccessToken first = holder.getAccessToken();
+
+        assertThat(holder.getAccessToken()).isSameAs(first);
+        assertThat(requestedTokens.get()).isEqualTo(1);
+        assertThat(metricRegistry.timer(name(OAuth2AccessTokenHolder.class, "refreshes")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void tokenWithinRefreshMarginIsReplaced() {
+        OAuth2AccessTokenHolder holder = new OAuth2AccessTokenHolder(tokensExpiringIn(REFRESH_MARGIN_SECONDS - 1), REFRESH_MARGIN_SECONDS, metricRegistry);
+
+        OAuth2AccessToken first = holder.getAccessToken();
+
+        assertThat(holder.getAccessToken()).isNotSameAs(first);
+        assertThat(requestedTokens.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void concurrentCallersShareOneRefresh() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Supplier<OAuth2AccessToken> slowTokens = tokensExpiringIn(3600);
+        OAuth2AccessTokenHolder holder = new OAuth2AccessTokenHolder(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return slowTokens.get();
+        }, REFRESH_MARGIN_SECONDS, metricRegistry);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<OAuth2AccessToken>> futures = newArrayList();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    return holder.getAccessToken();
+                }));
+            }
+            start.countDown();
+            for (Future<OAuth2AccessToken> future : futures) {
+                assertThat(future.get(5, SECONDS).getValue()).isEqualTo("token-1");
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(requestedTokens.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void failedRefreshIsCountedAndRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<OAuth2AccessToken> tokens = tokensExpiringIn(3600);
+        OAuth2AccessTokenHolder holder = new OAuth2AccessTokenHolder(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("token endpoint down");
+            }
+            return tokens.get();
+        }, REFRESH_MARGIN_SECONDS, metricRegistry);
+
+        assertThat(catchThrowable(holder::getAccessToken)).isInstanceOf(IllegalStateException.class);
+        assertThat(holder.getAccessToken().getValue()).isEqualTo("token-1");
+        assertThat(metricRegistry.counter(name(OAuth2AccessTokenHolder.class, "failures")).getCount()).isEqualTo(1);
+    }
+
+    private Supplier<OAuth2AccessToken> tokensExpiringIn(int seconds) {
+        return () -> {
+            DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken("token-" + requestedTokens.incrementAndGet());
+            token.setExpiration(new Date(System.currentTimeMillis() + SECONDS.toMillis(seconds)));
+            return token;
+        };
+    }
+}
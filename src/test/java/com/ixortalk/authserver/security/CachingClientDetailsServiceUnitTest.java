@@ -0,0 +1,136 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.provider.ClientDetails;
+import org.springframework.security.oauth2.provider.NoSuchClientException;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+import org.springframework.security.oauth2.provider.client.JdbcClientDetailsService;
+
+import static com.ixortalk.authserver.security.CachingClientDetailsService.INCREMENT_VERSION;
+import static com.ixortalk.authserver.security.CachingClientDetailsService.SELECT_VERSION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the CachingClientDetailsService.
+ *
+ * @see CachingClientDetailsService
+ */
+public class CachingClientDetailsServiceUnitTest {
+
+    private static final String CLIENT_ID = "theClientId";
+
+    private JdbcClientDetailsService delegate = mock(JdbcClientDetailsService.class);
+
+    private JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private IxorTalkProperties.ClientCache clientCache = new IxorTalkProperties.ClientCache();
+
+    private ClientDetails clientDetails = new BaseClientDetails(CLIENT_ID, null, "read", "password", "ROLE_CLIENT");
+
+    @Before
+    public void before() {
+        when(delegate.loadClientByClientId(CLIENT_ID)).thenReturn(clientDetails);
+        when(jdbcTemplate.queryForObject(SELECT_VERSION, Long.class)).thenReturn(0L);
+    }
+
+    @Test
+    public void loadedClientIsCached() {
+        CachingClientDetailsService cachingClientDetailsService = new CachingClientDetailsService(delegate, jdbcTemplate, clientCache);
+
+        assertThat(cachingClientDetailsService.loadClientByClientId(CLIENT_ID)).isSameAs(clientDetails);
+        assertThat(cachingClientDetailsService.loadClientByClientId(CLIENT_ID)).isSameAs(clientDetails);
+
+        verify(delegate, times(1)).loadClientByClientId(CLIENT_ID);
+    }
+
+    @Test
+    public void unknownClientIsNotCached() {
+        when(delegate.loadClientByClientId("unknown")).thenThrow(new NoSuchClientException("unknown"));
+        CachingClientDetailsService cachingClientDetailsService = new CachingClientDetailsService(delegate, jdbcTemplate, clientCache);
+
+        assertThat(catchThrowable(() -> cachingClientDetailsService.loadClientByClientId("unknown"))).isInstanceOf(NoSuchClientException.class);
+        assertThat(catchThrowable(() -> cachingClientDetailsService.loadClientByClientId("unknown"))).isInstanceOf(NoSuchClientException.class);
+
+        verify(delegate, times(2)).loadClientByClientId("unknown");
+    }
+
+    @Test
+    public void removedClientIsInvalidated() {
+        CachingClientDetailsService cachingClientDetailsService = new CachingClientDetailsService(delegate, jdbcTemplate, clientCache);
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+
+        cachingClientDetailsService.removeClientDetails(CLIENT_ID);
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+
+        verify(delegate).removeClientDetails(CLIENT_ID);
+        verify(jdbcTemplate).update(INCREMENT_VERSION);
+        verify(delegate, times(2)).loadClientByClientId(CLIENT_ID);
+    }
+
+    @Test
+    public void changeOnOtherNodeInvalidatesAfterVersionCheck() {
+        clientCache.setVersionCheckIntervalMillis(0);
+        CachingClientDetailsService cachingClientDetailsService = new CachingClientDetailsService(delegate, jdbcTemplate, clientCache);
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+        verify(delegate, times(1)).loadClientByClientId(CLIENT_ID);
+
+        when(jdbcTemplate.queryForObject(SELECT_VERSION, Long.class)).thenReturn(1L);
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+
+        verify(delegate, times(2)).loadClientByClientId(CLIENT_ID);
+    }
+
+    @Test
+    public void versionIsNotCheckedWithinInterval() {
+        clientCache.setVersionCheckIntervalMillis(60000);
+        CachingClientDetailsService cachingClientDetailsService = new CachingClientDetailsService(delegate, jdbcTemplate, clientCache);
+
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+
+        verify(jdbcTemplate, times(1)).queryForObject(SELECT_VERSION, Long.class);
+    }
+
+    @Test
+    public void disabledCacheAlwaysLoads() {
+        clientCache.setEnabled(false);
+        CachingClientDetailsService cachingClientDetailsService = new CachingClientDetailsService(delegate, jdbcTemplate, clientCache);
+
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+        cachingClientDetailsService.loadClientByClientId(CLIENT_ID);
+
+        verify(delegate, times(2)).loadClientByClientId(CLIENT_ID);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the CachingPasswordEncoder.
+ *
+ * @see CachingPasswordEncoder
+ */
+public class CachingPasswordEncoderUnitTest {
+
+    private static final String ENCODED_PASSWORD = "$2a$10$encoded";
+
+    private PasswordEncoder delegate = mock(PasswordEncoder.class);
+
+    private IxorTalkProperties.CredentialCache credentialCache = new IxorTalkProperties.CredentialCache();
+
+    @Before
+    public void before() {
+        credentialCache.setEnabled(true);
+        when(delegate.matches("secret", ENCODED_PASSWORD)).thenReturn(true);
+        when(delegate.matches("wrong", ENCODED_PASSWORD)).thenReturn(false);
+    }
+
+    @Test
+    public void verifiedPasswordIsRemembered() {
+        CachingPasswordEncoder cachingPasswordEncoder = new CachingPasswordEncoder(delegate, credentialCache);
+
+        assertThat(cachingPasswordEncoder.matches("secret", ENCODED_PASSWORD)).isTrue();
+        assertThat(cachingPasswordEncoder.matches("secret", ENCODED_PASSWORD)).isTrue();
+
+        verify(delegate, times(1)).matches("secret", ENCODED_PASSWORD);
+    }
+
+    @Test
+    public void otherPasswordIsAlwaysVerified() {
+        CachingPasswordEncoder cachingPasswordEncoder = new CachingPasswordEncoder(delegate, credentialCache);
+        cachingPasswordEncoder.matches("secret", ENCODED_PASSWORD);
+
+        assertThat(cachingPasswordEncoder.matches("wrong", ENCODED_PASSWORD)).isFalse();
+        assertThat(cachingPasswordEncoder.matches("wrong", ENCODED_PASSWORD)).isFalse();
+
+        verify(delegate, times(2)).matches("wrong", ENCODED_PASSWORD);
+    }
+
+    @Test
+    public void evictedPasswordIsVerifiedAgain() {
+        CachingPasswordEncoder cachingPasswordEncoder = new CachingPasswordEncoder(delegate, credentialCache);
+        cachingPasswordEncoder.matches("secret", ENCODED_PASSWORD);
+
+        cachingPasswordEncoder.evict(ENCODED_PASSWORD);
+
+        assertThat(cachingPasswordEncoder.matches("secret", ENCODED_PASSWORD)).isTrue();
+        verify(delegate, times(2)).matches("secret", ENCODED_PASSWORD);
+    }
+
+    @Test
+    public void disabled() {
+        credentialCache.setEnabled(false);
+        CachingPasswordEncoder cachingPasswordEncoder = new CachingPasswordEncoder(delegate, credentialCache);
+
+        cachingPasswordEncoder.matches("secret", ENCODED_PASSWORD);
+        cachingPasswordEncoder.matches("secret", ENCODED_PASSWORD);
+
+        verify(delegate, times(2)).matches("secret", ENCODED_PASSWORD);
+    }
+}
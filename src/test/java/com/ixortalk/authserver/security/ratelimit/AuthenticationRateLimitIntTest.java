@@ -0,0 +1,186 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.ratelimit;
+
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.web.filter.AuthenticationRateLimitFilter;
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import com.jayway.restassured.response.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.jayway.restassured.RestAssured.given;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_MOVED_TEMP;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuthenticationRateLimitIntTest extends AbstractSpringIntegrationTest {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private IxorTalkProperties.Bucket login;
+
+    private IxorTalkProperties.Bucket address;
+
+    @Before
+    public void before() {
+        IxorTalkProperties.RateLimit rateLimit = ixorTalkProperties.getSecurity().getRateLimit();
+        login = rateLimit.getLogin();
+        address = rateLimit.getAddress();
+        rateLimit.setLogin(new IxorTalkProperties.Bucket(2, 0.001));
+        rateLimit.setEnabled(true);
+    }
+
+    @After
+    public void after() {
+        IxorTalkProperties.RateLimit rateLimit = ixorTalkProperties.getSecurity().getRateLimit();
+        rateLimit.setLogin(login);
+        rateLimit.setAddress(address);
+        rateLimit.setTrustedProxies("");
+        rateLimit.setEnabled(false);
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertThat(new IxorTalkProperties.RateLimit().isEnabled()).isFalse();
+    }
+
+    @Test
+    public void throttlesAttemptsPerLogin() {
+        String login = "unknown-" + UUID.randomUUID();
+        long rejected = metricRegistry.meter(MetricRegistry.name(AuthenticationRateLimitFilter.class, "rejected", "login")).getCount();
+
+        passwordGrant(login).then().statusCode(HTTP_BAD_REQUEST);
+        passwordGrant(login.toUpperCase()).then().statusCode(HTTP_BAD_REQUEST);
+        Response response = passwordGrant(login);
+
+        assertThat(response.statusCode()).isEqualTo(TOO_MANY_REQUESTS);
+        assertThat(Long.parseLong(response.header("Retry-After"))).isGreaterThan(0);
+        assertThat(response.jsonPath().getString("error")).isEqualTo("too_many_requests");
+        assertThat(metricRegistry.meter(MetricRegistry.name(AuthenticationRateLimitFilter.class, "rejected", "login")).getCount()).isEqualTo(rejected + 1);
+    }
+
+    @Test
+    public void otherLoginsAreNotThrottled() {
+        String login = "unknown-" + UUID.randomUUID();
+        passwordGrant(login);
+        passwordGrant(login);
+        passwordGrant(login);
+
+        given()
+            .formParam("grant_type", "password")
+            .formParam("username", "user")
+            .formParam("password", "user")
+            .formParam("client_id", "clientAdmin")
+            .formParam("client_secret", "clientAdminSecret")
+            .when()
+            .post("/oauth/token")
+            .then()
+            .statusCode(HTTP_OK);
+    }
+
+    @Test
+    public void successfulAttemptsAreNotCounted() {
+        passwordGrant("user", "user").then().statusCode(HTTP_OK);
+        passwordGrant("user", "user").then().statusCode(HTTP_OK);
+        passwordGrant("user", "user").then().statusCode(HTTP_OK);
+    }
+
+    @Test
+    public void failedFormLoginsAreCounted() {
+        String login = "unknown-" + UUID.randomUUID();
+        formLogin(login).then().statusCode(HTTP_MOVED_TEMP);
+        formLogin(login).then().statusCode(HTTP_MOVED_TEMP);
+
+        formLogin(login).then().statusCode(TOO_MANY_REQUESTS);
+    }
+
+    @Test
+    public void throttlesOnTheForwardedAddressOfTrustedProxies() {
+        IxorTalkProperties.RateLimit rateLimit = ixorTalkProperties.getSecurity().getRateLimit();
+        rateLimit.setAddress(new IxorTalkProperties.Bucket(1, 0.001));
+        rateLimit.setTrustedProxies("127\\.0\\.0\\.1|0:0:0:0:0:0:0:1");
+
+        passwordGrant("user", "user", "10.0.0.1").then().statusCode(HTTP_OK);
+        passwordGrant("user", "user", "10.0.0.2").then().statusCode(HTTP_OK);
+
+        passwordGrant("user", "user", "10.0.0.1").then().statusCode(TOO_MANY_REQUESTS);
+    }
+
+    private static Response passwordGrant(String login) {
+        return passwordGrant(login, "wrong");
+    }
+
+    private static Response passwordGrant(String login, String password) {
+        return given()
+            .formParam("grant_type", "password")
+            .formParam("username", login)
+            .formParam("password", password)
+            .formParam("client_id", "clientAdmin")
+            .formParam("client_secret", "clientAdminSecret")
+            .when()
+            .post("/oauth/token");
+    }
+
+    private static Response passwordGrant(String login, String password, String forwardedFor) {
+        return given()
+            .header("X-Forwarded-For", forwardedFor)
+            .formParam("grant_type", "password")
+            .formParam("username", login)
+            .formParam("password", password)
+            .formParam("client_id", "clientAdmin")
+            .formParam("client_secret", "clientAdminSecret")
+            .when()
+            .post("/oauth/token");
+    }
+
+    private static Response formLogin(String login) {
+        Response loginPage = given().when().get("/login");
+        Matcher csrfToken = Pattern.compile("id=\"csrf_token\" name=\"([^\"]+)\" value=\"([^\"]+)\"").matcher(loginPage.asString());
+        assertThat(csrfToken.find()).isTrue();
+        return given()
+            .redirects().follow(false)
+            .cookies(loginPage.cookies())
+            .formParam(csrfToken.group(1), csrfToken.group(2))
+            .formParam("username", login)
+            .formParam("password", "wrong")
+            .when()
+            .post("/login");
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.ratelimit;
+
+import javax.inject.Inject;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JdbcRateLimiterIntTest extends AbstractSpringIntegrationTest {
+
+    private static final IxorTalkProperties.Bucket LIMIT = new IxorTalkProperties.Bucket(2, 0.001);
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private IxorTalkProperties.RateLimit rateLimit = new IxorTalkProperties.RateLimit();
+
+    private JdbcRateLimiter jdbcRateLimiter;
+
+    @Before
+    public void before() {
+        jdbcRateLimiter = new JdbcRateLimiter(jdbcTemplate, transactionManager, rateLimit);
+    }
+
+    @After
+    public void after() {
+        jdbcTemplate.update("delete from rate_limit_bucket");
+    }
+
+    @Test
+    public void sharesBucketsThroughTheDatabase() {
+        JdbcRateLimiter otherNode = new JdbcRateLimiter(jdbcTemplate, transactionManager, rateLimit);
+
+        assertThat(jdbcRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(otherNode.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(jdbcRateLimiter.tryConsume("key", LIMIT)).isGreaterThan(0);
+        assertThat(otherNode.tryConsume("otherKey", LIMIT)).isEqualTo(0);
+    }
+
+    @Test
+    public void refundNeverExceedsCapacity() {
+        jdbcRateLimiter.tryConsume("key", LIMIT);
+        jdbcRateLimiter.refund("key", LIMIT);
+        jdbcRateLimiter.refund("key", LIMIT);
+
+        assertThat(jdbcRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(jdbcRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(jdbcRateLimiter.tryConsume("key", LIMIT)).isGreaterThan(0);
+    }
+
+    @Test
+    public void removeIdleBuckets() {
+        jdbcRateLimiter.tryConsume("key", LIMIT);
+        jdbcTemplate.update("update rate_limit_bucket set last_refill = ?", System.currentTimeMillis() - 2000);
+        jdbcRateLimiter.tryConsume("recentKey", LIMIT);
+        rateLimit.setIdleSeconds(1);
+
+        jdbcRateLimiter.removeIdleBuckets();
+
+        assertThat(jdbcTemplate.queryForList("select bucket_key from rate_limit_bucket", String.class)).containsExactly("recentKey");
+    }
+}
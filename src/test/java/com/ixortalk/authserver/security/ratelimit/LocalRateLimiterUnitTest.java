@@ -0,0 +1,95 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the LocalRateLimiter.
+ *
+ * @see LocalRateLimiter
+ */
+public class LocalRateLimiterUnitTest {
+
+    private static final IxorTalkProperties.Bucket LIMIT = new IxorTalkProperties.Bucket(2, 0.5);
+
+    private AtomicLong nanos = new AtomicLong();
+
+    private LocalRateLimiter localRateLimiter = new LocalRateLimiter(new IxorTalkProperties.RateLimit(), nanos::get);
+
+    @Test
+    public void allowsBurstUpToCapacity() {
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(2);
+    }
+
+    @Test
+    public void refillsOverTime() {
+        localRateLimiter.tryConsume("key", LIMIT);
+        localRateLimiter.tryConsume("key", LIMIT);
+
+        nanos.addAndGet(SECONDS.toNanos(1));
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(1);
+
+        nanos.addAndGet(SECONDS.toNanos(1));
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+    }
+
+    @Test
+    public void neverRefillsBeyondCapacity() {
+        nanos.addAndGet(SECONDS.toNanos(60));
+
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isGreaterThan(0);
+    }
+
+    @Test
+    public void refundPutsBackATokenUpToCapacity() {
+        localRateLimiter.tryConsume("key", LIMIT);
+        localRateLimiter.tryConsume("key", LIMIT);
+        localRateLimiter.refund("key", LIMIT);
+        localRateLimiter.refund("key", LIMIT);
+        localRateLimiter.refund("key", LIMIT);
+
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(0);
+        assertThat(localRateLimiter.tryConsume("key", LIMIT)).isEqualTo(2);
+    }
+
+    @Test
+    public void keysHaveTheirOwnBucket() {
+        localRateLimiter.tryConsume("key", LIMIT);
+        localRateLimiter.tryConsume("key", LIMIT);
+
+        assertThat(localRateLimiter.tryConsume("otherKey", LIMIT)).isEqualTo(0);
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.util.Date;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.oauth2.common.DefaultExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.TokenRequest;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the CachingTokenStore.
+ *
+ * @see CachingTokenStore
+ */
+public class CachingTokenStoreUnitTest {
+
+    private static final String TOKEN_VALUE = "tokenValue";
+
+    private TokenStore delegate = mock(TokenStore.class);
+
+    private PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private IxorTalkProperties.TokenStoreConfig tokenStoreConfig = new IxorTalkProperties.TokenStoreConfig();
+
+    private OAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(TOKEN_VALUE);
+
+    private OAuth2Authentication authentication;
+
+    private CachingTokenStore cachingTokenStore;
+
+    @Before
+    public void before() {
+        authentication = new OAuth2Authentication(
+            new TokenRequest(emptyMap(), "client", singleton("read"), "password").createOAuth2Request(new BaseClientDetails("client", null, "read", "password", "ROLE_USER")),
+            new UsernamePasswordAuthenticationToken("user", null, emptyList()));
+    }
+
+    @After
+    public void after() {
+        cachingTokenStore.destroy();
+    }
+
+    @Test
+    public void readsAreServedFromCache() {
+        cachingTokenStore = new CachingTokenStore(delegate, transactionManager, tokenStoreConfig);
+        when(delegate.readAccessToken(TOKEN_VALUE)).thenReturn(accessToken);
+        when(delegate.readAuthentication(TOKEN_VALUE)).thenReturn(authentication);
+
+        assertThat(cachingTokenStore.readAccessToken(TOKEN_VALUE)).isEqualTo(accessToken);
+        assertThat(cachingTokenStore.readAccessToken(TOKEN_VALUE)).isEqualTo(accessToken);
+        assertThat(cachingTokenStore.readAuthentication(accessToken)).isEqualTo(authentication);
+        assertThat(cachingTokenStore.readAuthentication(TOKEN_VALUE)).isEqualTo(authentication);
+
+        verify(delegate, times(1)).readAccessToken(TOKEN_VALUE);
+        verify(delegate, times(1)).readAuthentication(TOKEN_VALUE);
+    }
+
+    @Test
+    public void storedTokensAreCachedByValueAndAuthenticationKey() {
+        cachingTokenStore = new CachingTokenStore(delegate, transactionManager, tokenStoreConfig);
+
+        cachingTokenStore.storeAccessToken(accessToken, authentication);
+
+        assertThat(cachingTokenStore.readAccessToken(TOKEN_VALUE)).isEqualTo(accessToken);
+        assertThat(cachingTokenStore.getAccessToken(authentication)).isEqualTo(accessToken);
+        verify(delegate).storeAccessToken(accessToken, authentication);
+        verify(delegate, never()).readAccessToken(TOKEN_VALUE);
+        verify(delegate, never()).getAccessToken(authentication);
+    }
+
+    @Test
+    public void removeAccessTokenInvalidatesCache() {
+        cachingTokenStore = new CachingTokenStore(delegate, transactionManager, tokenStoreConfig);
+        cachingTokenStore.storeAccessToken(accessToken, authentication);
+
+        cachingTokenStore.removeAccessToken(accessToken);
+
+        assertThat(cachingTokenStore.readAccessToken(TOKEN_VALUE)).isNull();
+        assertThat(cachingTokenStore.readAuthentication(TOKEN_VALUE)).isNull();
+        assertThat(cachingTokenStore.getAccessToken(authentication)).isNull();
+        verify(delegate).removeAccessToken(accessToken);
+    }
+
+    @Test
+    public void evictTokensOfUser() {
+        cachingTokenStore = new CachingTokenStore(delegate, transactionManager, tokenStoreConfig);
+        cachingTokenStore.storeAccessToken(accessToken, authentication);
+
+        cachingTokenStore.evictTokensOfUser("user");
+
+        assertThat(cachingTokenStore.readAuthentication(TOKEN_VALUE)).isNull();
+        verify(delegate).readAuthentication(TOKEN_VALUE);
+    }
+
+    @Test
+    public void evictTokensOfUserOnlyEvictsThatUser() {
+        cachingTokenStore = new CachingTokenStore(delegate, transactionManager, tokenStoreConfig);
+        OAuth2AccessToken otherAccessToken = new DefaultOAuth2AccessToken("otherTokenValue");
+        OAuth2Authentication otherAuthentication = new OAuth2Authentication(authentication.getOAuth2Request(), new UsernamePasswordAuthenticationToken("other", null, emptyList()));
+        DefaultExpiringOAuth2RefreshToken refreshToken = new DefaultExpiringOAuth2RefreshToken("refreshTokenValue", new Date());
+        cachingTokenStore.storeAccessToken(accessToken, authentication);
+        cachingTokenStore.storeRefreshToken(refreshToken, authentication);
+        cachingTokenStore.storeAccessToken(otherAccessToken, otherAuthentication);
+
+        cachingTokenStore.evictTokensOfUser("user");
+
+        assertThat(cachingTokenStore.getAccessToken(otherAuthentication)).isEqualTo(otherAccessToken);
+        assertThat(cachingTokenStore.readAuthentication("otherTokenValue")).isEqualTo(otherAuthentication);
+        assertThat(cachingTokenStore.getAccessToken(authentication)).isNull();
+        assertThat(cachingTokenStore.readRefreshToken("refreshTokenValue")).isNull();
+        verify(delegate, never()).getAccessToken(otherAuthentication);
+        verify(delegate).getAccessToken(authentication);
+        verify(delegate).readRefreshToken("refreshTokenValue");
+    }
+
+    @Test
+    public void replacedTokenIsNoLongerFoundByAuthenticationKey() {
+        cachingTokenStore = new CachingTokenStore(delegate, transactionManager, tokenStoreConfig);
+        OAuth2AccessToken newAccessToken = new DefaultOAuth2AccessToken("newTokenValue");
+        cachingTokenStore.storeAccessToken(accessToken, authentication);
+        cachingTokenStore.storeAccessToken(newAccessToken, authentication);
+
+        cachingTokenStore.removeAccessToken(accessToken);
+
+        assertThat(cachingTokenStore.getAccessToken(authentication)).isEqualTo(newAccessToken);
+        verify(delegate, never()).getAccessToken(authentication);
+    }
+
+    @Test
+    public void writeBehindDefersWritesUntilFlush() {
+        tokenStoreConfig.getWriteBehind().setEnabled(true);
+        tokenStoreConfig.getWriteBehind().setFlushIntervalMillis(60000);
+        cachingTokenStore = new CachingTokenStore(delegate, transactionManager, tokenStoreConfig);
+
+        cachingTokenStore.storeAccessToken(accessToken, authentication);
+        assertThat(cachingTokenStore.readAccessToken(TOKEN_VALUE)).isEqualTo(accessToken);
+        verify(delegate, never()).storeAccessToken(accessToken, authentication);
+
+        cachingTokenStore.flushPendingWrites();
+        verify(delegate).storeAccessToken(accessToken, authentication);
+    }
+
+    @Test
+    public void writeBehindCacheMissFlushesPendingWritesFirst() {
+        tokenStoreConfig.getWriteBehind().setEnabled(true);
+        tokenStoreConfig.getWriteBehind().setFlushIntervalMillis(60000);
+        cachingTokenStore = new CachingTokenStore(delegate, transactionManager, tokenStoreConfig);
+
+        cachingTokenStore.storeAccessToken(accessToken, authentication);
+        cachingTokenStore.removeAccessToken(accessToken);
+        cachingTokenStore.readAccessToken(TOKEN_VALUE);
+
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).storeAccessToken(accessToken, authentication);
+        inOrder.verify(delegate).removeAccessToken(accessToken);
+        inOrder.verify(delegate).readAccessToken(TOKEN_VALUE);
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import javax.inject.Inject;
+
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.getPasswordGrantAccessToken;
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.http.ContentType.JSON;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {"ixortalk.oauth.token-store.serializer: COMPACT"})
+public class CompactTokenSerializerIntTest extends AbstractSpringIntegrationTest {
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private CachingTokenStore cachingTokenStore;
+
+    @Test
+    public void tokensAreStoredCompact() {
+        cachingTokenStore.evictTokensOfUser("user");
+        jdbcTemplate.update("delete from oauth_access_token where user_name = 'user'");
+        String accessToken = getPasswordGrantAccessToken("user", "user").getValue();
+        cachingTokenStore.evictTokensOfUser("user");
+
+        given()
+            .auth().oauth2(accessToken)
+            .accept(JSON)
+            .when()
+            .get("/user")
+            .then()
+            .statusCode(HTTP_OK);
+
+        byte[] authentication = jdbcTemplate.queryForObject("select authentication from oauth_access_token where user_name = 'user'", byte[].class);
+        assertThat(authentication[0]).isEqualTo(CompactTokenSerializer.MAGIC);
+    }
+}
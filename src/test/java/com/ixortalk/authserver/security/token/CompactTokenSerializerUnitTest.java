@@ -0,0 +1,129 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.ExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.common.util.SerializationUtils;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+
+import static com.ixortalk.authserver.security.token.TokenSerializerTestFixtures.accessToken;
+import static com.ixortalk.authserver.security.token.TokenSerializerTestFixtures.authentication;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the CompactTokenSerializer.
+ *
+ * @see CompactTokenSerializer
+ */
+public class CompactTokenSerializerUnitTest {
+
+    private CompactTokenSerializer compactTokenSerializer = new CompactTokenSerializer();
+
+    private JavaTokenSerializer javaTokenSerializer = new JavaTokenSerializer();
+
+    @Test
+    public void accessTokenRoundTrip() {
+        DefaultOAuth2AccessToken accessToken = accessToken();
+
+        OAuth2AccessToken deserialized = compactTokenSerializer.deserializeAccessToken(compactTokenSerializer.serializeAccessToken(accessToken));
+
+        assertThat(deserialized.getValue()).isEqualTo(accessToken.getValue());
+        assertThat(deserialized.getExpiration()).isEqualTo(accessToken.getExpiration());
+        assertThat(deserialized.getTokenType()).isEqualTo(accessToken.getTokenType());
+        assertThat(deserialized.getScope()).isEqualTo(accessToken.getScope());
+        assertThat(deserialized.getAdditionalInformation()).isEqualTo(accessToken.getAdditionalInformation());
+        assertThat(deserialized.getRefreshToken()).isInstanceOf(ExpiringOAuth2RefreshToken.class);
+        assertThat(deserialized.getRefreshToken().getValue()).isEqualTo(accessToken.getRefreshToken().getValue());
+        assertThat(((ExpiringOAuth2RefreshToken) deserialized.getRefreshToken()).getExpiration())
+            .isEqualTo(((ExpiringOAuth2RefreshToken) accessToken.getRefreshToken()).getExpiration());
+    }
+
+    @Test
+    public void refreshTokenRoundTrip() {
+        OAuth2RefreshToken refreshToken = accessToken().getRefreshToken();
+
+        assertThat(compactTokenSerializer.deserializeRefreshToken(compactTokenSerializer.serializeRefreshToken(refreshToken))).isEqualTo(refreshToken);
+    }
+
+    @Test
+    public void authenticationRoundTrip() {
+        OAuth2Authentication authentication = authentication();
+
+        OAuth2Authentication deserialized = compactTokenSerializer.deserializeAuthentication(compactTokenSerializer.serializeAuthentication(authentication));
+
+        assertThat(deserialized).isEqualTo(authentication);
+        assertThat(deserialized.getName()).isEqualTo("user");
+        assertThat(deserialized.getAuthorities()).isEqualTo(authentication.getAuthorities());
+        assertThat(deserialized.isAuthenticated()).isTrue();
+        assertThat(deserialized.getUserAuthentication().getDetails()).isEqualTo(authentication.getUserAuthentication().getDetails());
+    }
+
+    @Test
+    public void unknownUserAuthenticationIsEmbeddedJavaSerialized() {
+        OAuth2Authentication authentication = new OAuth2Authentication(authentication().getOAuth2Request(), new PreAuthenticatedAuthenticationToken("user", "n/a", authentication().getAuthorities()));
+
+        OAuth2Authentication deserialized = compactTokenSerializer.deserializeAuthentication(compactTokenSerializer.serializeAuthentication(authentication));
+
+        assertThat(deserialized.getUserAuthentication()).isInstanceOf(PreAuthenticatedAuthenticationToken.class);
+        assertThat(deserialized).isEqualTo(authentication);
+    }
+
+    @Test
+    public void readsLegacyJavaSerializedRows() {
+        OAuth2Authentication authentication = authentication();
+        DefaultOAuth2AccessToken accessToken = accessToken();
+
+        assertThat(compactTokenSerializer.deserializeAuthentication(SerializationUtils.serialize(authentication))).isEqualTo(authentication);
+        assertThat(compactTokenSerializer.deserializeAccessToken(SerializationUtils.serialize(accessToken)).getExpiration()).isEqualTo(accessToken.getExpiration());
+    }
+
+    @Test
+    public void javaSerializerReadsCompactRows() {
+        OAuth2Authentication authentication = authentication();
+
+        assertThat(javaTokenSerializer.deserializeAuthentication(compactTokenSerializer.serializeAuthentication(authentication))).isEqualTo(authentication);
+    }
+
+    @Test
+    public void compactFormatIsSmallerThanJavaSerialization() {
+        assertThat(compactTokenSerializer.serializeAccessToken(accessToken()).length * 3)
+            .isLessThan(javaTokenSerializer.serializeAccessToken(accessToken()).length);
+        assertThat(compactTokenSerializer.serializeAuthentication(authentication()).length * 3)
+            .isLessThan(javaTokenSerializer.serializeAuthentication(authentication()).length);
+    }
+
+    @Test
+    public void unsupportedVersionIsRejected() {
+        byte[] serialized = compactTokenSerializer.serializeAccessToken(accessToken());
+        serialized[1] = CompactTokenSerializer.VERSION + 1;
+
+        assertThatThrownBy(() -> compactTokenSerializer.deserializeAccessToken(serialized)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
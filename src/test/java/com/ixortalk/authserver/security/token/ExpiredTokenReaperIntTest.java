@@ -0,0 +1,110 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.sql.Timestamp;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.getPasswordGrantAccessToken;
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+    "ixortalk.oauth.token-store.reaper.chunk-size: 2",
+    "ixortalk.oauth.token-store.reaper.pause-millis: 0"
+})
+public class ExpiredTokenReaperIntTest extends AbstractSpringIntegrationTest {
+
+    private static final Timestamp PAST = new Timestamp(currentTimeMillis() - HOURS.toMillis(1));
+    private static final Timestamp FUTURE = new Timestamp(currentTimeMillis() + HOURS.toMillis(1));
+
+    @Inject
+    private ExpiredTokenReaper expiredTokenReaper;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void clearTables() {
+        jdbcTemplate.update("delete from oauth_access_token");
+        jdbcTemplate.update("delete from oauth_refresh_token");
+        jdbcTemplate.update("delete from oauth_approvals");
+    }
+
+    @Test
+    public void storedTokensGetExpiration() {
+        getPasswordGrantAccessToken("user", "user");
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from oauth_access_token where expiration is null", Integer.class)).isEqualTo(0);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from oauth_refresh_token where expiration is null", Integer.class)).isEqualTo(0);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from oauth_access_token where expiration > current_timestamp", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    public void removeExpiredTokens() {
+        for (int i = 0; i < 5; i++) {
+            insertAccessToken("expired-" + i, PAST);
+            insertRefreshToken("expired-" + i, PAST);
+            insertApproval("client-" + i, PAST);
+        }
+        insertAccessToken("valid", FUTURE);
+        insertAccessToken("never-expiring", null);
+        insertRefreshToken("valid", FUTURE);
+        insertApproval("valid", FUTURE);
+        long deletedAccessTokensBefore = metricRegistry.counter(name(ExpiredTokenReaper.class, "deleted", "access-tokens")).getCount();
+
+        expiredTokenReaper.removeExpiredTokens();
+
+        assertThat(jdbcTemplate.queryForList("select token_id from oauth_access_token", String.class)).containsOnly("valid", "never-expiring");
+        assertThat(jdbcTemplate.queryForList("select token_id from oauth_refresh_token", String.class)).containsOnly("valid");
+        assertThat(jdbcTemplate.queryForList("select clientId from oauth_approvals", String.class)).containsOnly("valid");
+        assertThat(metricRegistry.counter(name(ExpiredTokenReaper.class, "deleted", "access-tokens")).getCount() - deletedAccessTokensBefore).isEqualTo(5);
+        assertThat(metricRegistry.timer(name(ExpiredTokenReaper.class, "duration")).getCount()).isPositive();
+    }
+
+    private void insertAccessToken(String tokenId, Timestamp expiration) {
+        jdbcTemplate.update("insert into oauth_access_token (token_id, authentication_id, client_id, expiration) values (?, ?, 'client', ?)", tokenId, tokenId, expiration);
+    }
+
+    private void insertRefreshToken(String tokenId, Timestamp expiration) {
+        jdbcTemplate.update("insert into oauth_refresh_token (token_id, expiration) values (?, ?)", tokenId, expiration);
+    }
+
+    private void insertApproval(String clientId, Timestamp expiresAt) {
+        jdbcTemplate.update("insert into oauth_approvals (userId, clientId, scope, status, expiresAt) values ('user', ?, 'read', 'APPROVED', ?)", clientId, expiresAt);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+
+import static com.ixortalk.authserver.security.token.TokenSerializerTestFixtures.accessToken;
+import static com.ixortalk.authserver.security.token.TokenSerializerTestFixtures.authentication;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Compares the {@link TokenSerializer} implementations, run with {@link #main(String[])} from the test classpath.
+ * Serialized sizes are compared in CompactTokenSerializerUnitTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class TokenSerializerBenchmark {
+
+    @Param({"JAVA", "COMPACT"})
+    private String serializer;
+
+    private TokenSerializer tokenSerializer;
+
+    private OAuth2AccessToken accessToken;
+
+    private OAuth2Authentication authentication;
+
+    private byte[] serializedAccessToken;
+
+    private byte[] serializedAuthentication;
+
+    @Setup
+    public void setUp() {
+        tokenSerializer = "COMPACT".equals(serializer) ? new CompactTokenSerializer() : new JavaTokenSerializer();
+        accessToken = accessToken();
+        authentication = authentication();
+        serializedAccessToken = tokenSerializer.serializeAccessToken(accessToken);
+        serializedAuthentication = tokenSerializer.serializeAuthentication(authentication);
+    }
+
+    @Benchmark
+    public byte[] serializeAccessToken() {
+        return tokenSerializer.serializeAccessToken(accessToken);
+    }
+
+    @Benchmark
+    public OAuth2AccessToken deserializeAccessToken() {
+        return tokenSerializer.deserializeAccessToken(serializedAccessToken);
+    }
+
+    @Benchmark
+    public byte[] serializeAuthentication() {
+        return tokenSerializer.serializeAuthentication(authentication);
+    }
+
+    @Benchmark
+    public OAuth2Authentication deserializeAuthentication() {
+        return tokenSerializer.deserializeAuthentication(serializedAuthentication);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TokenSerializerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.security.token;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.oauth2.common.DefaultExpiringOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.TokenRequest;
+import org.springframework.security.oauth2.provider.client.BaseClientDetails;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+
+/**
+ * Tokens shaped like the ones a password grant stores.
+ */
+final class TokenSerializerTestFixtures {
+
+    private TokenSerializerTestFixtures() {
+    }
+
+    static DefaultOAuth2AccessToken accessToken() {
+        DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken("4c5e1bd8-28d5-4b52-8b6a-2d1b3f0f7e5a");
+        accessToken.setExpiration(new Date(currentTimeMillis() + HOURS.toMillis(24)));
+        accessToken.setRefreshToken(new DefaultExpiringOAuth2RefreshToken("0f3a9b52-6c1e-4a38-b2d4-7e8f9a0b1c2d", new Date(currentTimeMillis() + DAYS.toMillis(30))));
+        accessToken.setScope(newHashSet("openid", "read", "write"));
+        accessToken.setAdditionalInformation(singletonMap("tenant", "ixortalk"));
+        return accessToken;
+    }
+
+    static OAuth2Authentication authentication() {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("grant_type", "password");
+        parameters.put("username", "user");
+        parameters.put("scope", "openid read write");
+        List<GrantedAuthority> authorities = newArrayList(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"));
+
+        User user = new User("user", "secret", authorities);
+        user.eraseCredentials();
+        UsernamePasswordAuthenticationToken userAuthentication = new UsernamePasswordAuthenticationToken(user, null, authorities);
+        userAuthentication.setDetails(parameters);
+
+        BaseClientDetails client = new BaseClientDetails("web_app", null, "openid,read,write", "password,refresh_token", "ROLE_CLIENT");
+        return new OAuth2Authentication(
+            new TokenRequest(parameters, "web_app", newHashSet("openid", "read", "write"), "password").createOAuth2Request(client),
+            userAuthentication);
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import com.ixortalk.authserver.AuthserverApp;
+import com.ixortalk.authserver.domain.MailOutboxEntry;
+import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.repository.MailOutboxRepository;
+import com.ixortalk.authserver.repository.UserRepository;
+import com.ixortalk.authserver.service.feign.MailingService;
+import com.ixortalk.authserver.service.feign.SendMailVO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static java.util.Optional.empty;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the MailOutboxDispatcher.
+ *
+ * @see MailOutboxDispatcher
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = AuthserverApp.class)
+@WebAppConfiguration
+@ActiveProfiles("test")
+public class MailOutboxDispatcherIntTest {
+
+    @MockBean
+    private MailingService mailingService;
+
+    @Inject
+    private MailService mailService;
+
+    @Inject
+    private MailOutboxDispatcher mailOutboxDispatcher;
+
+    @Inject
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Before
+    public void before() {
+        mailOutboxRepository.deleteAll();
+    }
+
+    @After
+    public void after() {
+        mailOutboxRepository.deleteAll();
+    }
+
+    @Test
+    public void queuedMailIsSentAndRemoved() {
+        User user = userRepository.findOneByLogin("user").get();
+        mailService.sendCreationEmail(user, empty());
+        assertThat(mailOutboxRepository.findAll()).hasSize(1);
+
+        mailOutboxDispatcher.dispatchDueMails();
+
+        ArgumentCaptor<SendMailVO> sendMailVO = ArgumentCaptor.forClass(SendMailVO.class);
+        verify(mailingService).send(sendMailVO.capture());
+        assertThat(sendMailVO.getValue().getToEmail()).isEqualTo(user.getEmail());
+        assertThat(sendMailVO.getValue().getTemplateName()).isEqualTo("creationEmail");
+        assertThat(sendMailVO.getValue().getAdditionalVariables()).containsKeys("user", "platformUrl", "authserverUrl");
+        assertThat(mailOutboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    public void mailIsNotQueuedWhenTransactionRollsBack() {
+        User user = userRepository.findOneByLogin("user").get();
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            mailService.sendPasswordResetMail(user);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(mailOutboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    public void failedMailIsRetriedLater() {
+        doThrow(new IllegalStateException("mailing service down")).when(mailingService).send(any());
+        mailService.sendPasswordResetMail(userRepository.findOneByLogin("user").get());
+
+        mailOutboxDispatcher.dispatchDueMails();
+        mailOutboxDispatcher.dispatchDueMails();
+
+        verify(mailingService, times(1)).send(any());
+        List<MailOutboxEntry> entries = mailOutboxRepository.findAll();
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).getAttempts()).isEqualTo(1);
+        assertThat(entries.get(0).getLastError()).contains("mailing service down");
+        assertThat(entries.get(0).getNextAttemptDate()).isAfter(ZonedDateTime.now());
+    }
+
+    @Test
+    public void disabledDispatcherSendsNothing() {
+        mailService.sendPasswordResetMail(userRepository.findOneByLogin("user").get());
+
+        mailOutboxDispatcher.dispatch();
+
+        verify(mailingService, never()).send(any());
+    }
+}
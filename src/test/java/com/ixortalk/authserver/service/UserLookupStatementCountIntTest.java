@@ -0,0 +1,139 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+
+import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.repository.UserRepository;
+import com.ixortalk.authserver.security.UserDetailsService;
+import com.ixortalk.authserver.web.rest.AbstractSpringIntegrationTest;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards the number of SQL statements needed to look up a user together with its authorities.
+ *
+ * @see UserService
+ * @see UserDetailsService
+ */
+@TestPropertySource(properties = {
+    "spring.jpa.properties.hibernate.cache.use_second_level_cache: true",
+    "spring.jpa.properties.hibernate.cache.use_query_cache: true"
+})
+public class UserLookupStatementCountIntTest extends AbstractSpringIntegrationTest {
+
+    @Inject
+    private UserService userService;
+
+    @Inject
+    private UserDetailsService userDetailsService;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    private SessionFactory sessionFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void before() {
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        statistics = sessionFactory.getStatistics();
+        evictCaches();
+    }
+
+    @After
+    public void after() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void getUserWithAuthoritiesByLogin() {
+        User user = userService.getUserWithAuthoritiesByLogin("user").get();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(Hibernate.isInitialized(user.getAuthorities())).isTrue();
+    }
+
+    @Test
+    public void getUserWithAuthoritiesByLoginFromCache() {
+        userService.getUserWithAuthoritiesByLogin("user");
+        statistics.clear();
+
+        User user = userService.getUserWithAuthoritiesByLogin("user").get();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(0);
+        assertThat(Hibernate.isInitialized(user.getAuthorities())).isTrue();
+    }
+
+    @Test
+    public void getUserWithAuthoritiesById() {
+        Long id = userRepository.findOneByLogin("user").get().getId();
+        evictCaches();
+
+        User user = userService.getUserWithAuthorities(id);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(Hibernate.isInitialized(user.getAuthorities())).isTrue();
+    }
+
+    @Test
+    public void getCurrentUserWithAuthorities() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("user", "user"));
+
+        User user = userService.getUserWithAuthorities();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(Hibernate.isInitialized(user.getAuthorities())).isTrue();
+    }
+
+    @Test
+    public void loadUserByUsername() {
+        userDetailsService.loadUserByUsername("user");
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(0);
+    }
+
+    private void evictCaches() {
+        sessionFactory.getCache().evictEntityRegions();
+        sessionFactory.getCache().evictCollectionRegions();
+        sessionFactory.getCache().evictQueryRegions();
+        statistics.clear();
+    }
+}
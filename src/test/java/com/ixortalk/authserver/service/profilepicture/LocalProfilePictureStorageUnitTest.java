@@ -0,0 +1,90 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service.profilepicture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.web.MockMultipartFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the LocalProfilePictureStorage.
+ *
+ * @see LocalProfilePictureStorage
+ */
+public class LocalProfilePictureStorageUnitTest {
+
+    private static final byte[] PICTURE = "0123456789".getBytes();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalProfilePictureStorage storage;
+
+    @Before
+    public void before() throws IOException {
+        storage = new LocalProfilePictureStorage(temporaryFolder.getRoot().toPath());
+    }
+
+    @Test
+    public void saveThenGet() throws IOException {
+        storage.save("key", new MockMultipartFile("file", "file", "image/png", PICTURE));
+
+        try (StoredProfilePicture stored = storage.get("key").get()) {
+            assertThat(stored.getContentType()).isEqualTo("image/png");
+            assertThat(stored.getContentLength()).isEqualTo(PICTURE.length);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            stored.transferTo(outputStream);
+            assertThat(outputStream.toByteArray()).isEqualTo(PICTURE);
+        }
+        assertThat(temporaryFolder.getRoot().list()).containsOnly("key");
+    }
+
+    @Test
+    public void notStored() throws IOException {
+        assertThat(storage.get("key")).isEmpty();
+    }
+
+    @Test
+    public void keysAreNotPaths() {
+        assertThatThrownBy(() -> storage.get("../key")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void interruptedUploadsAreRemovedOnStartup() throws IOException {
+        File leftOver = temporaryFolder.newFile("key123.tmp");
+
+        new LocalProfilePictureStorage(temporaryFolder.getRoot().toPath());
+
+        assertThat(leftOver).doesNotExist();
+    }
+}
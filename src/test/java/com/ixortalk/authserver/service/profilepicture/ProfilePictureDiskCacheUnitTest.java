@@ -0,0 +1,158 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.service.profilepicture;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the ProfilePictureDiskCache.
+ *
+ * @see ProfilePictureDiskCache
+ */
+public class ProfilePictureDiskCacheUnitTest {
+
+    private static final String CONTENT_TYPE = "image/png";
+
+    private static final byte[] PICTURE = "0123456789".getBytes();
+
+    /**
+     * The content type is stored as 2 length bytes followed by its characters.
+     */
+    private static final long CACHED_SIZE = 2 + CONTENT_TYPE.length() + PICTURE.length;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private IxorTalkProperties ixorTalkProperties = new IxorTalkProperties();
+
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    private ProfilePictureDiskCache diskCache;
+
+    @Before
+    public void before() throws IOException {
+        ixorTalkProperties.getProfilePicture().getDiskCache().setDirectory(temporaryFolder.getRoot().getPath());
+        ixorTalkProperties.getProfilePicture().getDiskCache().setMaxSizeBytes(2 * CACHED_SIZE);
+        diskCache = new ProfilePictureDiskCache(ixorTalkProperties, metricRegistry);
+    }
+
+    @Test
+    public void putThenGet() throws IOException {
+        assertThat(diskCache.get("key")).isEmpty();
+
+        try (ProfilePictureFile written = diskCache.put("key", CONTENT_TYPE, new ByteArrayInputStream(PICTURE))) {
+            assertThat(read(written)).isEqualTo(PICTURE);
+        }
+
+        try (ProfilePictureFile cached = diskCache.get("key").get()) {
+            assertThat(cached.getContentType()).isEqualTo(CONTENT_TYPE);
+            assertThat(cached.getContentLength()).isEqualTo(PICTURE.length);
+            assertThat(read(cached)).isEqualTo(PICTURE);
+        }
+        assertThat(diskCache.getTotalSize()).isEqualTo(CACHED_SIZE);
+        assertThat(metricRegistry.meter(name(ProfilePictureDiskCache.class, "hit")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(name(ProfilePictureDiskCache.class, "miss")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        put("first");
+        put("second");
+        diskCache.get("first").get().close();
+
+        put("third");
+
+        assertThat(diskCache.get("second")).isEmpty();
+        assertThat(diskCache.get("first")).isPresent();
+        assertThat(diskCache.get("third")).isPresent();
+        assertThat(diskCache.getTotalSize()).isEqualTo(2 * CACHED_SIZE);
+        assertThat(temporaryFolder.getRoot().list()).hasSize(2);
+        assertThat(metricRegistry.meter(name(ProfilePictureDiskCache.class, "eviction")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictedPictureStaysReadableWhileOpen() throws IOException {
+        put("first");
+        Optional<ProfilePictureFile> open = diskCache.get("first");
+
+        put("second");
+        put("third");
+
+        assertThat(diskCache.get("first")).isEmpty();
+        try (ProfilePictureFile cached = open.get()) {
+            assertThat(read(cached)).isEqualTo(PICTURE);
+        }
+    }
+
+    @Test
+    public void pictureDeletedBeforeOpeningIsAMiss() throws IOException {
+        put("key");
+        for (File file : temporaryFolder.getRoot().listFiles()) {
+            assertThat(file.delete()).isTrue();
+        }
+
+        assertThat(diskCache.get("key")).isEmpty();
+        assertThat(diskCache.getTotalSize()).isEqualTo(0);
+        assertThat(metricRegistry.meter(name(ProfilePictureDiskCache.class, "miss")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void picksUpPicturesAfterRestart() throws IOException {
+        put("key");
+        File leftOver = temporaryFolder.newFile("interrupted.tmp");
+
+        ProfilePictureDiskCache restarted = new ProfilePictureDiskCache(ixorTalkProperties, new MetricRegistry());
+
+        try (ProfilePictureFile cached = restarted.get("key").get()) {
+            assertThat(cached.getContentType()).isEqualTo(CONTENT_TYPE);
+            assertThat(read(cached)).isEqualTo(PICTURE);
+        }
+        assertThat(restarted.getTotalSize()).isEqualTo(CACHED_SIZE);
+        assertThat(leftOver).doesNotExist();
+    }
+
+    private void put(String key) throws IOException {
+        diskCache.put(key, CONTENT_TYPE, new ByteArrayInputStream(PICTURE)).close();
+    }
+
+    private static byte[] read(ProfilePictureFile cached) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        cached.transferTo(outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.filter;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuthenticationRateLimitFilter.
+ *
+ * @see AuthenticationRateLimitFilter
+ */
+public class AuthenticationRateLimitFilterUnitTest {
+
+    private static final String TRUSTED_PROXIES = "10\\.0\\.0\\.\\d+";
+
+    @Test
+    public void addressIsTheRemoteAddressWithoutTrustedProxies() {
+        assertThat(AuthenticationRateLimitFilter.address(request("10.0.0.1", "1.2.3.4"), "")).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    public void addressIsTheRemoteAddressWhenNotATrustedProxy() {
+        assertThat(AuthenticationRateLimitFilter.address(request("5.6.7.8", "1.2.3.4"), TRUSTED_PROXIES)).isEqualTo("5.6.7.8");
+    }
+
+    @Test
+    public void addressIsTheFirstUntrustedForwardedHop() {
+        assertThat(AuthenticationRateLimitFilter.address(request("10.0.0.1", "spoofed, 1.2.3.4, 10.0.0.2"), TRUSTED_PROXIES)).isEqualTo("1.2.3.4");
+    }
+
+    @Test
+    public void addressIsTheRemoteAddressWithoutForwardedHeader() {
+        assertThat(AuthenticationRateLimitFilter.address(request("10.0.0.1", null), TRUSTED_PROXIES)).isEqualTo("10.0.0.1");
+    }
+
+    @Test
+    public void clientErrorsAreFailures() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(400);
+
+        assertThat(AuthenticationRateLimitFilter.failed(response)).isTrue();
+    }
+
+    @Test
+    public void redirectsWithAnErrorAreFailures() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(302);
+        response.setHeader("Location", "http://localhost/login?error");
+
+        assertThat(AuthenticationRateLimitFilter.failed(response)).isTrue();
+    }
+
+    @Test
+    public void otherResponsesAreSuccesses() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(302);
+        response.setHeader("Location", "http://localhost/");
+
+        assertThat(AuthenticationRateLimitFilter.failed(response)).isFalse();
+        assertThat(AuthenticationRateLimitFilter.failed(new MockHttpServletResponse())).isFalse();
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.rest;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.ixortalk.authserver.domain.PersistentAuditEvent;
+import com.ixortalk.authserver.repository.PersistenceAuditEventRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.adminToken;
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.userToken;
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.http.ContentType.JSON;
+import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.time.ZoneId.systemDefault;
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditResource_export_IntTest extends AbstractSpringIntegrationTest {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private static final String CSV = "text/csv";
+
+    private static final String EXPORT_URL = "/api/audits/export?fromDate=2017-01-01&toDate=2017-01-31";
+
+    @Inject
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Before
+    public void before() {
+        jdbcTemplate.update("delete from jhi_persistent_audit_evt_data");
+        jdbcTemplate.update("delete from jhi_persistent_audit_event");
+
+        Map<String, String> data = new HashMap<>();
+        data.put("remoteAddress", "127.0.0.1");
+        data.put("sessionId", "session-1");
+        saveEvent("first", LocalDateTime.of(2016, 12, 31, 23, 59), data);
+        saveEvent("second", LocalDateTime.of(2017, 1, 1, 0, 0), data);
+        saveEvent("third", LocalDateTime.of(2017, 1, 15, 12, 0), emptyMap());
+        saveEvent("fourth", LocalDateTime.of(2017, 1, 31, 23, 59, 30), data);
+        saveEvent("fifth", LocalDateTime.of(2017, 2, 1, 0, 0), data);
+    }
+
+    @Test
+    public void exportNdjson() throws Exception {
+        String body =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .accept(NDJSON)
+                .when()
+                .get(EXPORT_URL)
+                .then()
+                .statusCode(HTTP_OK)
+                .contentType(NDJSON)
+                .extract().asString();
+
+        List<JsonNode> events = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            events.add(objectMapper.readTree(line));
+        }
+
+        assertThat(events.stream().map(event -> event.get("principal").asText()).collect(toList()))
+            .containsExactly("second", "third", "fourth");
+        assertThat(events.get(0).get("type").asText()).isEqualTo("AUTHENTICATION_SUCCESS");
+        assertThat(events.get(0).get("data").get("remoteAddress").asText()).isEqualTo("127.0.0.1");
+        assertThat(events.get(0).get("data").get("sessionId").asText()).isEqualTo("session-1");
+        assertThat(events.get(1).has("data")).isFalse();
+    }
+
+    @Test
+    public void exportCsv() throws Exception {
+        String body =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .accept(CSV)
+                .when()
+                .get(EXPORT_URL)
+                .then()
+                .statusCode(HTTP_OK)
+                .contentType(CSV)
+                .extract().asString();
+
+        List<String[]> rows = new CsvMapper()
+            .readerFor(String[].class)
+            .with(CsvParser.Feature.WRAP_AS_ARRAY)
+            .<String[]>readValues(body)
+            .readAll();
+
+        assertThat(rows).hasSize(4);
+        assertThat(rows.get(0)).containsExactly("timestamp", "principal", "type", "data");
+        assertThat(rows.get(1)).containsExactly(
+            Instant.from(LocalDateTime.of(2017, 1, 1, 0, 0).atZone(systemDefault())).toString(),
+            "second", "AUTHENTICATION_SUCCESS", "remoteAddress=127.0.0.1;sessionId=session-1");
+        assertThat(rows.get(2)).endsWith("third", "AUTHENTICATION_SUCCESS", "");
+        assertThat(rows.get(3)[1]).isEqualTo("fourth");
+    }
+
+    @Test
+    public void nonAdminUsersCannotExport() {
+        given()
+            .auth().preemptive().oauth2(userToken().getValue())
+            .accept(NDJSON + ", " + JSON.getAcceptHeader())
+            .when()
+            .get(EXPORT_URL)
+            .then()
+            .statusCode(HTTP_FORBIDDEN);
+    }
+
+    private void saveEvent(String principal, LocalDateTime date, Map<String, String> data) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType("AUTHENTICATION_SUCCESS");
+        event.setAuditEventDate(date);
+        event.setData(new HashMap<>(data));
+        persistenceAuditEventRepository.save(event);
+    }
+}
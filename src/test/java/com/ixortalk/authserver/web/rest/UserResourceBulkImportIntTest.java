@@ -0,0 +1,239 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.rest;
+
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.domain.Authority;
+import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.repository.MailOutboxRepository;
+import com.ixortalk.authserver.repository.UserRepository;
+import com.jayway.restassured.path.json.JsonPath;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.adminToken;
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.userToken;
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.http.ContentType.JSON;
+import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toSet;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserResourceBulkImportIntTest extends AbstractSpringIntegrationTest {
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    private int chunkSize;
+
+    @Before
+    public void before() {
+        chunkSize = ixorTalkProperties.getUserImport().getChunkSize();
+        ixorTalkProperties.getUserImport().setChunkSize(2);
+    }
+
+    @After
+    public void after() {
+        ixorTalkProperties.getUserImport().setChunkSize(chunkSize);
+        userRepository.findAllByLoginIn(asList("bulk1", "bulk2", "bulk3")).forEach(userRepository::delete);
+        User user = userRepository.findOneByLogin("user").get();
+        user.setLastName("User");
+        userRepository.save(user);
+        mailOutboxRepository.deleteAll();
+    }
+
+    @Test
+    public void importJson() throws Exception {
+        JSONArray users = new JSONArray()
+            .put(user("bulk1", "bulk1@localhost", "Bulk"))
+            .put(user("user", "user@localhost", "Updated"))
+            .put(user("bulk2", "admin@localhost", "Bulk"))
+            .put(user("bulk3", "bulk3@localhost", "Bulk"));
+
+        JsonPath results =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .contentType(JSON)
+                .accept(JSON)
+                .body(users.toString())
+                .when()
+                .post("/api/users/import/bulk")
+                .then()
+                .statusCode(HTTP_OK)
+                .extract().jsonPath();
+
+        assertThat(results.getList("row", Integer.class)).containsExactly(1, 2, 3, 4);
+        assertThat(results.getList("status")).containsExactly("CREATED", "UPDATED", "FAILED", "CREATED");
+        assertThat(results.getString("[2].error")).isEqualTo("emailexists");
+        assertThat(userRepository.findOneByLogin("user").get().getLastName()).isEqualTo("Updated");
+        assertThat(userRepository.findOneByLogin("bulk2")).isEmpty();
+        assertThat(authoritiesOf("bulk3")).containsOnly("ROLE_USER");
+        assertThat(mailOutboxRepository.findAll()).extracting("toEmail").containsOnly("bulk1@localhost", "bulk3@localhost");
+    }
+
+    @Test
+    public void importCsv() {
+        String csv = "login,email,firstName,lastName,langKey,activated,authorities\n" +
+            "bulk1,bulk1@localhost,Bulk,One,nl,true,ROLE_USER;ROLE_ADMIN\n" +
+            "bulk2,bulk2@localhost,Bulk,Two,en,true,ROLE_USER\n" +
+            "bulk1,bulk1@localhost,Bulk,Again,nl,true,ROLE_USER\n";
+
+        JsonPath results =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .contentType("text/csv")
+                .accept(JSON)
+                .body(csv)
+                .when()
+                .post("/api/users/import/bulk")
+                .then()
+                .statusCode(HTTP_OK)
+                .extract().jsonPath();
+
+        assertThat(results.getList("status")).containsExactly("CREATED", "CREATED", "UPDATED");
+        assertThat(userRepository.findOneByLogin("bulk1").get().getLastName()).isEqualTo("Again");
+        assertThat(authoritiesOf("bulk2")).containsOnly("ROLE_USER");
+    }
+
+    @Test
+    public void invalidRowsFailOnTheirOwn() throws Exception {
+        JSONArray users = new JSONArray()
+            .put(user("bulk1", "bulk1@localhost", "Bulk"))
+            .put(user("bad login!", "bad@localhost", "Bulk"))
+            .put(user("bulk2", "not an email", "Bulk"))
+            .put(user("bulk3", "bulk3@localhost", "Bulk").put("langKey", "toolong"));
+
+        JsonPath results =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .contentType(JSON)
+                .accept(JSON)
+                .body(users.toString())
+                .when()
+                .post("/api/users/import/bulk")
+                .then()
+                .statusCode(HTTP_OK)
+                .extract().jsonPath();
+
+        assertThat(results.getList("status")).containsExactly("CREATED", "FAILED", "FAILED", "FAILED");
+        assertThat(results.getList("error")).containsExactly(null, "invalid", "invalid", "invalid");
+        assertThat(results.getList("field")).containsExactly(null, "login", "email", "langKey");
+        assertThat(userRepository.findOneByLogin("bulk1")).isPresent();
+        assertThat(userRepository.findAllByLoginIn(asList("bulk2", "bulk3"))).isEmpty();
+    }
+
+    @Test
+    public void unparseableRowsFailOnTheirOwn() throws Exception {
+        JSONArray users = new JSONArray()
+            .put(user("bulk1", "bulk1@localhost", "Bulk"))
+            .put(user("bulk2", "bulk2@localhost", "Bulk").put("activated", "maybe"))
+            .put(user("bulk3", "bulk3@localhost", "Bulk"));
+
+        JsonPath results =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .contentType(JSON)
+                .accept(JSON)
+                .body(users.toString())
+                .when()
+                .post("/api/users/import/bulk")
+                .then()
+                .statusCode(HTTP_OK)
+                .extract().jsonPath();
+
+        assertThat(results.getList("status")).containsExactly("CREATED", "FAILED", "CREATED");
+        assertThat(results.getList("error")).containsExactly(null, "unparseable", null);
+        assertThat(userRepository.findOneByLogin("bulk2")).isEmpty();
+        assertThat(userRepository.findOneByLogin("bulk3")).isPresent();
+    }
+
+    @Test
+    public void malformedBodyStopsTheImport() throws Exception {
+        String users = "[" + user("bulk1", "bulk1@localhost", "Bulk") + ", {\"login\": }, " + user("bulk2", "bulk2@localhost", "Bulk") + "]";
+
+        String results =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .contentType(JSON)
+                .accept(JSON)
+                .body(users)
+                .when()
+                .post("/api/users/import/bulk")
+                .then()
+                .statusCode(HTTP_OK)
+                .extract().asString();
+
+        assertThat(results).contains("\"row\":2,\"login\":null,\"status\":\"FAILED\",\"error\":\"unparseable\"").doesNotEndWith("]");
+        assertThat(userRepository.findOneByLogin("bulk1")).isPresent();
+        assertThat(userRepository.findOneByLogin("bulk2")).isEmpty();
+    }
+
+    @Test
+    public void nonAdminUsersCannotImport() {
+        given()
+            .auth().preemptive().oauth2(userToken().getValue())
+            .contentType(JSON)
+            .body("[]")
+            .when()
+            .post("/api/users/import/bulk")
+            .then()
+            .statusCode(HTTP_FORBIDDEN);
+    }
+
+    private Set<String> authoritiesOf(String login) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+            userRepository.findOneByLogin(login).get().getAuthorities().stream().map(Authority::getName).collect(toSet()));
+    }
+
+    private static JSONObject user(String login, String email, String lastName) throws Exception {
+        return new JSONObject()
+            .put("login", login)
+            .put("email", email)
+            .put("firstName", "User")
+            .put("lastName", lastName)
+            .put("langKey", "en")
+            .put("activated", true)
+            .put("authorities", new JSONArray().put("ROLE_USER"));
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ixortalk.authserver.config.IxorTalkProperties;
+import com.ixortalk.authserver.repository.UserRepository;
+import com.jayway.restassured.response.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.adminToken;
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.userToken;
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.http.ContentType.JSON;
+import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserResourceKeysetIntTest extends AbstractSpringIntegrationTest {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private IxorTalkProperties ixorTalkProperties;
+
+    @Inject
+    private ObjectMapper objectMapper;
+
+    private int chunkSize;
+
+    @Before
+    public void before() {
+        chunkSize = ixorTalkProperties.getUserExport().getChunkSize();
+        ixorTalkProperties.getUserExport().setChunkSize(2);
+    }
+
+    @After
+    public void after() {
+        ixorTalkProperties.getUserExport().setChunkSize(chunkSize);
+    }
+
+    @Test
+    public void pagesFollowTheNextLink() {
+        List<Long> ids = new ArrayList<>();
+        String next = "/api/users?afterId=0&size=2";
+        while (next != null) {
+            Response response =
+                given()
+                    .auth().preemptive().oauth2(adminToken().getValue())
+                    .accept(JSON)
+                    .when()
+                    .get(next)
+                    .then()
+                    .statusCode(HTTP_OK)
+                    .extract().response();
+
+            List<Long> page = response.jsonPath().getList("id", Long.class);
+            assertThat(page.size()).isLessThanOrEqualTo(2);
+            ids.addAll(page);
+            next = nextLink(response.getHeader("Link"));
+        }
+
+        assertThat(ids).isSorted().doesNotHaveDuplicates().hasSize((int) userRepository.count());
+    }
+
+    @Test
+    public void pagesIncludeAuthorities() {
+        List<String> adminAuthorities =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .accept(JSON)
+                .when()
+                .get("/api/users?afterId=0&size=50")
+                .then()
+                .statusCode(HTTP_OK)
+                .extract().jsonPath().getList("find { it.login == 'admin' }.authorities");
+
+        assertThat(adminAuthorities).contains("ROLE_ADMIN", "ROLE_USER");
+    }
+
+    @Test
+    public void exportNdjson() throws Exception {
+        String body =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .accept(NDJSON)
+                .when()
+                .get("/api/users")
+                .then()
+                .statusCode(HTTP_OK)
+                .contentType(NDJSON)
+                .extract().asString();
+
+        List<JsonNode> users = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            users.add(objectMapper.readTree(line));
+        }
+
+        assertThat(users).hasSize((int) userRepository.count());
+        assertThat(users.stream().map(user -> user.get("id").asLong()).collect(toList())).isSorted();
+        assertThat(users.stream().filter(user -> user.get("login").asText().equals("admin")).findFirst().get().get("authorities"))
+            .extracting(JsonNode::asText)
+            .contains("ROLE_ADMIN");
+    }
+
+    @Test
+    public void nonAdminUsersCannotExport() {
+        given()
+            .auth().preemptive().oauth2(userToken().getValue())
+            .accept(NDJSON + ", " + JSON.getAcceptHeader())
+            .when()
+            .get("/api/users")
+            .then()
+            .statusCode(HTTP_FORBIDDEN);
+    }
+
+    private static String nextLink(String link) {
+        if (link == null || !link.contains("rel=\"next\"")) {
+            return null;
+        }
+        return link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+    }
+}
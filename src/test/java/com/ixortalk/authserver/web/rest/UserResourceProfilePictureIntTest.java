@@ -29,10 +29,17 @@ import com.ixortalk.aws.s3.library.config.AwsS3Template;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.ImageIO;
 import javax.inject.Inject;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 import static com.ixortalk.authserver.domain.UserTestBuilder.aUser;
@@ -41,11 +48,20 @@ import static com.ixortalk.test.oauth2.OAuth2TestTokens.adminToken;
 import static com.ixortalk.test.oauth2.OAuth2TestTokens.userToken;
 import static com.ixortalk.test.util.Randomizer.nextString;
 import static com.jayway.restassured.RestAssured.given;
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
 import static java.net.HttpURLConnection.*;
+import static org.apache.http.HttpHeaders.CACHE_CONTROL;
 import static org.apache.http.HttpHeaders.CONTENT_TYPE;
+import static org.apache.http.HttpHeaders.ETAG;
+import static org.apache.http.HttpHeaders.IF_NONE_MATCH;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
 import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
@@ -150,6 +166,95 @@ public class UserResourceProfilePictureIntTest extends AbstractSpringIntegration
         assertThat(binaryResponse).isEqualTo(BINARY_CONTENT);
     }
 
+    @Test
+    public void getProfilePictureByKey_closesS3Object() throws IOException {
+        mockGetFromS3(awsS3Template, INITIAL_PROFILE_PICTURE_KEY, BINARY_CONTENT, PHOTO_CONTENT_TYPE);
+
+        given()
+            .when()
+            .get("/api/profile-pictures/{profilePictureKey}", INITIAL_PROFILE_PICTURE_KEY)
+            .then()
+            .statusCode(HTTP_OK);
+
+        verify(s3Object, timeout(5000)).close();
+    }
+
+    @Test
+    public void getProfilePictureByKey_cacheHeaders() {
+        mockGetFromS3(awsS3Template, INITIAL_PROFILE_PICTURE_KEY, BINARY_CONTENT, PHOTO_CONTENT_TYPE);
+
+        given()
+            .when()
+            .get("/api/profile-pictures/{profilePictureKey}", INITIAL_PROFILE_PICTURE_KEY)
+            .then()
+            .statusCode(HTTP_OK)
+            .header(ETAG, "\"" + INITIAL_PROFILE_PICTURE_KEY + "\"")
+            .header(CACHE_CONTROL, "max-age=31536000, public");
+    }
+
+    @Test
+    public void getProfilePictureByKey_notModified() {
+        given()
+            .header(IF_NONE_MATCH, "\"" + INITIAL_PROFILE_PICTURE_KEY + "\"")
+            .when()
+            .get("/api/profile-pictures/{profilePictureKey}", INITIAL_PROFILE_PICTURE_KEY)
+            .then()
+            .statusCode(HTTP_NOT_MODIFIED)
+            .header(ETAG, "\"" + INITIAL_PROFILE_PICTURE_KEY + "\"");
+
+        verifyZeroInteractions(awsS3Template);
+    }
+
+    @Test
+    public void getProfilePictureByLogin_mustRevalidate() {
+        mockGetFromS3(awsS3Template, INITIAL_PROFILE_PICTURE_KEY, BINARY_CONTENT, PHOTO_CONTENT_TYPE);
+
+        given()
+            .auth().preemptive().oauth2(adminToken().getValue())
+            .header(IF_NONE_MATCH, "\"" + nextString("otherProfilePictureKey") + "\"")
+            .when()
+            .get("/api/users/{login}/profile-picture", user.getLogin())
+            .then()
+            .statusCode(HTTP_OK)
+            .header(ETAG, "\"" + INITIAL_PROFILE_PICTURE_KEY + "\"")
+            .header(CACHE_CONTROL, "no-cache");
+    }
+
+    @Test
+    public void getProfilePictureByKey_nearestThumbnail() {
+        mockGetFromS3(awsS3Template, INITIAL_PROFILE_PICTURE_KEY + "-64", BINARY_CONTENT, PHOTO_CONTENT_TYPE);
+
+        byte[] binaryResponse =
+            given()
+                .when()
+                .get("/api/profile-pictures/{profilePictureKey}?size=50", INITIAL_PROFILE_PICTURE_KEY)
+                .then()
+                .statusCode(HTTP_OK)
+                .header(ETAG, "\"" + INITIAL_PROFILE_PICTURE_KEY + "-64\"")
+                .header(CACHE_CONTROL, "max-age=31536000, public")
+                .extract().response().asByteArray();
+
+        assertThat(binaryResponse).isEqualTo(BINARY_CONTENT);
+    }
+
+    @Test
+    public void getProfilePictureByKey_thumbnailNotThereYet() {
+        mockGetFromS3(awsS3Template, INITIAL_PROFILE_PICTURE_KEY, BINARY_CONTENT, PHOTO_CONTENT_TYPE);
+
+        byte[] binaryResponse =
+            given()
+                .when()
+                .get("/api/profile-pictures/{profilePictureKey}?size=2000", INITIAL_PROFILE_PICTURE_KEY)
+                .then()
+                .statusCode(HTTP_OK)
+                .header(ETAG, "\"" + INITIAL_PROFILE_PICTURE_KEY + "\"")
+                .header(CACHE_CONTROL, "no-cache")
+                .extract().response().asByteArray();
+
+        assertThat(binaryResponse).isEqualTo(BINARY_CONTENT);
+        verify(awsS3Template).get(INITIAL_PROFILE_PICTURE_KEY + "-512");
+    }
+
     @Test
     public void getProfilePictureByKey_notFound() {
         given()
@@ -188,6 +293,36 @@ public class UserResourceProfilePictureIntTest extends AbstractSpringIntegration
         verifySaveInS3(awsS3Template, userRepository.findOneByLogin(user.getLogin()).map(User::getProfilePictureKey).orElseThrow(() -> new IllegalStateException("User " + user.getLogin() + " should exist at this point!")));
     }
 
+    @Test
+    public void setProfilePicture_generatesThumbnails() throws IOException {
+        byte[] picture = png(600, 300);
+
+        given()
+            .auth().preemptive().oauth2(adminToken().getValue())
+            .contentType(MULTIPART_FORM_DATA_VALUE)
+            .multiPart("file", "file", picture, "image/png")
+            .when()
+            .post("/api/users/{login}/profile-picture", user.getLogin())
+            .then()
+            .statusCode(HTTP_OK);
+
+        String profilePictureKey = userRepository.findOneByLogin(user.getLogin()).map(User::getProfilePictureKey).get();
+        ArgumentCaptor<MultipartFile> thumbnail32 = ArgumentCaptor.forClass(MultipartFile.class);
+        ArgumentCaptor<MultipartFile> thumbnail512 = ArgumentCaptor.forClass(MultipartFile.class);
+        verify(awsS3Template, timeout(10000)).save(eq(profilePictureKey + "-32"), thumbnail32.capture());
+        verify(awsS3Template).save(eq(profilePictureKey + "-64"), any());
+        verify(awsS3Template).save(eq(profilePictureKey + "-128"), any());
+        verify(awsS3Template).save(eq(profilePictureKey + "-512"), thumbnail512.capture());
+
+        assertThat(thumbnail32.getValue().getContentType()).isEqualTo(IMAGE_JPEG_VALUE);
+        BufferedImage smallest = ImageIO.read(thumbnail32.getValue().getInputStream());
+        assertThat(smallest.getWidth()).isEqualTo(32);
+        assertThat(smallest.getHeight()).isEqualTo(16);
+        BufferedImage largest = ImageIO.read(thumbnail512.getValue().getInputStream());
+        assertThat(largest.getWidth()).isEqualTo(512);
+        assertThat(largest.getHeight()).isEqualTo(256);
+    }
+
     @Test
     public void setProfilePicture_ProfilePictureKeyRegenerated() throws IOException {
         mockPutInS3OnlyExpectingBytes(awsS3Template, BINARY_CONTENT);
@@ -237,4 +372,15 @@ public class UserResourceProfilePictureIntTest extends AbstractSpringIntegration
 
         verifyZeroInteractions(awsS3Template);
     }
+
+    static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillOval(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
 }
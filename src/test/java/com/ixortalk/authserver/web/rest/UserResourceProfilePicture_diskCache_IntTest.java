@@ -0,0 +1,99 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.rest;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.MetricRegistry;
+import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.repository.UserRepository;
+import com.ixortalk.authserver.service.profilepicture.ProfilePictureDiskCache;
+import com.ixortalk.aws.s3.library.config.AwsS3Template;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.ixortalk.authserver.domain.UserTestBuilder.aUser;
+import static com.ixortalk.authserver.web.rest.UserResourceProfilePictureIntTest.BINARY_CONTENT;
+import static com.ixortalk.authserver.web.rest.UserResourceProfilePictureIntTest.PHOTO_CONTENT_TYPE;
+import static com.jayway.restassured.RestAssured.given;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static org.apache.http.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@TestPropertySource(properties = {
+    "com.ixortalk.s3.default-bucket: default-bucket-test-config",
+    "ixortalk.profile-picture.disk-cache.enabled: true",
+    "ixortalk.profile-picture.disk-cache.directory: target/profile-picture-cache"
+})
+public class UserResourceProfilePicture_diskCache_IntTest extends AbstractSpringIntegrationTest {
+
+    @MockBean
+    protected AwsS3Template awsS3Template;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    private User user;
+
+    @Before
+    public void before() {
+        user = userRepository.save(aUser().build().generateProfilePictureKey());
+    }
+
+    @After
+    public void after() {
+        userRepository.delete(user);
+    }
+
+    @Test
+    public void secondRequestIsServedFromDisk() {
+        mockGetFromS3(awsS3Template, user.getProfilePictureKey(), BINARY_CONTENT, PHOTO_CONTENT_TYPE);
+        long hits = metricRegistry.meter(name(ProfilePictureDiskCache.class, "hit")).getCount();
+
+        assertThat(getProfilePicture()).isEqualTo(BINARY_CONTENT);
+        assertThat(getProfilePicture()).isEqualTo(BINARY_CONTENT);
+
+        verify(awsS3Template, times(1)).get(user.getProfilePictureKey());
+        assertThat(metricRegistry.meter(name(ProfilePictureDiskCache.class, "hit")).getCount()).isEqualTo(hits + 1);
+    }
+
+    private byte[] getProfilePicture() {
+        return given()
+            .when()
+            .get("/api/profile-pictures/{profilePictureKey}", user.getProfilePictureKey())
+            .then()
+            .statusCode(HTTP_OK)
+            .header(CONTENT_TYPE, PHOTO_CONTENT_TYPE)
+            .extract().response().asByteArray();
+    }
+}
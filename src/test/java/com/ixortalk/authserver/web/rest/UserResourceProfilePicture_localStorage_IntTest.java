@@ -0,0 +1,130 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+import javax.inject.Inject;
+
+import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.repository.UserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.ixortalk.authserver.domain.UserTestBuilder.aUser;
+import static com.ixortalk.authserver.web.rest.UserResourceProfilePictureIntTest.png;
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.adminToken;
+import static com.jayway.awaitility.Awaitility.await;
+import static com.jayway.restassured.RestAssured.given;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.http.HttpHeaders.CONTENT_TYPE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
+import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
+
+/**
+ * Profile pictures without S3: no default bucket is configured.
+ */
+@TestPropertySource(properties = {
+    "ixortalk.profile-picture.storage: local",
+    "ixortalk.profile-picture.local-storage.directory: target/profile-pictures"
+})
+public class UserResourceProfilePicture_localStorage_IntTest extends AbstractSpringIntegrationTest {
+
+    @Inject
+    private UserRepository userRepository;
+
+    private User user;
+
+    @Before
+    public void before() {
+        user = userRepository.save(aUser().build());
+    }
+
+    @After
+    public void after() {
+        userRepository.delete(user);
+    }
+
+    @Test
+    public void uploadThenDownload() throws IOException {
+        byte[] picture = png(600, 300);
+
+        given()
+            .auth().preemptive().oauth2(adminToken().getValue())
+            .contentType(MULTIPART_FORM_DATA_VALUE)
+            .multiPart("file", "file", picture, "image/png")
+            .when()
+            .post("/api/users/{login}/profile-picture", user.getLogin())
+            .then()
+            .statusCode(HTTP_OK);
+
+        byte[] downloaded =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .when()
+                .get("/api/users/{login}/profile-picture", user.getLogin())
+                .then()
+                .statusCode(HTTP_OK)
+                .header(CONTENT_TYPE, "image/png")
+                .extract().response().asByteArray();
+
+        assertThat(downloaded).isEqualTo(picture);
+    }
+
+    @Test
+    public void thumbnails() throws IOException {
+        given()
+            .auth().preemptive().oauth2(adminToken().getValue())
+            .contentType(MULTIPART_FORM_DATA_VALUE)
+            .multiPart("file", "file", png(600, 300), "image/png")
+            .when()
+            .post("/api/users/{login}/profile-picture", user.getLogin())
+            .then()
+            .statusCode(HTTP_OK);
+
+        await().atMost(10, SECONDS).until(() ->
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .when()
+                .get("/api/users/{login}/profile-picture?size=32", user.getLogin())
+                .contentType().equals(IMAGE_JPEG_VALUE));
+
+        byte[] thumbnail =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .when()
+                .get("/api/users/{login}/profile-picture?size=32", user.getLogin())
+                .then()
+                .statusCode(HTTP_OK)
+                .extract().response().asByteArray();
+
+        assertThat(ImageIO.read(new ByteArrayInputStream(thumbnail)).getWidth()).isEqualTo(32);
+    }
+}
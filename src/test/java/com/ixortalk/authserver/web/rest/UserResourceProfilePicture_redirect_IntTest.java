@@ -0,0 +1,143 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016-present IxorTalk CVBA
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.ixortalk.authserver.web.rest;
+
+import java.net.URL;
+import java.util.Date;
+
+import javax.inject.Inject;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AmazonS3;
+import com.ixortalk.authserver.domain.User;
+import com.ixortalk.authserver.repository.UserRepository;
+import com.ixortalk.aws.s3.library.config.AwsS3Template;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.ixortalk.authserver.domain.UserTestBuilder.aUser;
+import static com.ixortalk.test.oauth2.OAuth2TestTokens.adminToken;
+import static com.jayway.restassured.RestAssured.given;
+import static java.net.HttpURLConnection.HTTP_MOVED_TEMP;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static org.apache.http.HttpHeaders.CACHE_CONTROL;
+import static org.apache.http.HttpHeaders.LOCATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@TestPropertySource(properties = {
+    "com.ixortalk.s3.default-bucket: " + UserResourceProfilePicture_redirect_IntTest.BUCKET,
+    "ixortalk.profile-picture.redirect.enabled: true",
+    "ixortalk.profile-picture.redirect.direct-urls: true"
+})
+public class UserResourceProfilePicture_redirect_IntTest extends AbstractSpringIntegrationTest {
+
+    static final String BUCKET = "default-bucket-test-config";
+
+    @MockBean
+    protected AwsS3Template awsS3Template;
+
+    @MockBean
+    private AmazonS3 amazonS3;
+
+    @Inject
+    private UserRepository userRepository;
+
+    private User user;
+
+    private String profilePictureKey;
+
+    @Before
+    public void before() throws Exception {
+        user = userRepository.save(aUser().build().generateProfilePictureKey());
+        profilePictureKey = user.getProfilePictureKey();
+        when(amazonS3.doesObjectExist(BUCKET, profilePictureKey)).thenReturn(true);
+        when(amazonS3.generatePresignedUrl(eq(BUCKET), eq(profilePictureKey), any(Date.class), eq(HttpMethod.GET))).thenReturn(presignedUrl(profilePictureKey));
+    }
+
+    @After
+    public void after() {
+        userRepository.delete(user);
+    }
+
+    @Test
+    public void redirectsToPresignedUrl() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            String cacheControl =
+                given()
+                    .redirects().follow(false)
+                    .when()
+                    .get("/api/profile-pictures/{profilePictureKey}", profilePictureKey)
+                    .then()
+                    .statusCode(HTTP_MOVED_TEMP)
+                    .header(LOCATION, presignedUrl(profilePictureKey).toString())
+                    .extract().header(CACHE_CONTROL);
+
+            assertThat(cacheControl).matches("max-age=\\d+, private");
+        }
+
+        verify(amazonS3, times(1)).generatePresignedUrl(eq(BUCKET), eq(profilePictureKey), any(Date.class), eq(HttpMethod.GET));
+        verifyZeroInteractions(awsS3Template);
+    }
+
+    @Test
+    public void thumbnailNotThereYet_redirectsToOriginal() throws Exception {
+        when(amazonS3.doesObjectExist(BUCKET, profilePictureKey + "-64")).thenReturn(false);
+
+        given()
+            .redirects().follow(false)
+            .when()
+            .get("/api/profile-pictures/{profilePictureKey}?size=64", profilePictureKey)
+            .then()
+            .statusCode(HTTP_MOVED_TEMP)
+            .header(LOCATION, presignedUrl(profilePictureKey).toString())
+            .header(CACHE_CONTROL, "no-cache");
+    }
+
+    @Test
+    public void userDetailsLinkToPresignedUrl() throws Exception {
+        String profilePictureUrl =
+            given()
+                .auth().preemptive().oauth2(adminToken().getValue())
+                .when()
+                .get("/api/users/{login}", user.getLogin())
+                .then()
+                .statusCode(HTTP_OK)
+                .extract().jsonPath().getString("profilePictureUrl");
+
+        assertThat(profilePictureUrl).isEqualTo(presignedUrl(profilePictureKey).toString());
+    }
+
+    private static URL presignedUrl(String key) throws Exception {
+        return new URL("https://" + BUCKET + ".s3.amazonaws.com/" + key + "?X-Amz-Signature=signature");
+    }
+}